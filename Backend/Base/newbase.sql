@@ -46,6 +46,47 @@ CREATE INDEX IF NOT EXISTS idx_cv_modeles_est_actif ON cv_modeles(est_actif);
 CREATE INDEX IF NOT EXISTS idx_cv_modeles_categorie ON cv_modeles(categorie);
 CREATE INDEX IF NOT EXISTS idx_cv_modeles_ordre ON cv_modeles(ordre); 
 
+-- Table pour persister les extractions de CV (Gemini), indexees par empreinte du fichier
+CREATE TABLE IF NOT EXISTS cv_extraction_cache (
+    id BIGSERIAL PRIMARY KEY,
+    content_hash VARCHAR(64) NOT NULL,
+    extraction_version VARCHAR(100) NOT NULL,
+    donnees_json JSONB NOT NULL,
+    date_creation TIMESTAMP,
+    date_dernier_acces TIMESTAMP,
+    CONSTRAINT uk_cv_extraction_cache_hash_version UNIQUE (content_hash, extraction_version)
+);
+
+CREATE INDEX IF NOT EXISTS idx_cv_extraction_cache_acces ON cv_extraction_cache(date_dernier_acces);
+
+-- File d'attente des recherches d'emploi (partagée entre les instances du backend)
+CREATE TABLE IF NOT EXISTS job_research_jobs (
+    id UUID PRIMARY KEY,
+    statut VARCHAR(20) NOT NULL,
+    etape VARCHAR(20),
+    nom_fichier VARCHAR(255),
+    type_contenu VARCHAR(150),
+    contenu_fichier BYTEA,
+    localisation VARCHAR(100),
+    inclure_remote BOOLEAN,
+    max_resultats INTEGER,
+    requete_google TEXT,
+    profil_json JSONB,
+    resultats_json JSONB,
+    message_erreur VARCHAR(1000),
+    tentatives INTEGER NOT NULL DEFAULT 0,
+    worker_id VARCHAR(100),
+    date_creation TIMESTAMP,
+    date_debut TIMESTAMP,
+    date_heartbeat TIMESTAMP,
+    date_fin TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_job_research_jobs_statut ON job_research_jobs(statut, date_creation);
+
+-- Bases créées avant l'ajout du nombre de résultats demandés
+ALTER TABLE job_research_jobs ADD COLUMN IF NOT EXISTS max_resultats INTEGER;
+
     INSERT INTO cv_modeles (nom, description, template_type, contenu_json, categorie, ordre, est_premium) VALUES
     -- Modèle 6: CV Premium Executif
     (
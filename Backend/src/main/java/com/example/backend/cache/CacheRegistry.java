@@ -0,0 +1,32 @@
+package com.example.backend.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre des caches applicatifs, pour exposer leurs statistiques au même endroit
+ */
+@Component
+public class CacheRegistry {
+
+    private final Map<String, TtlCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Crée et enregistre un cache borné
+     */
+    public <K, V> TtlCache<K, V> register(String name, int maxEntries, Duration ttl) {
+        TtlCache<K, V> cache = new TtlCache<>(name, maxEntries, ttl);
+        caches.put(name, cache);
+        return cache;
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        caches.keySet().stream().sorted().forEach(name -> stats.put(name, caches.get(name).getStats()));
+        return stats;
+    }
+}
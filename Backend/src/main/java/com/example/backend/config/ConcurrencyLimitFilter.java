@@ -0,0 +1,225 @@
+package com.example.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limite le nombre de requêtes traitées en même temps sur les endpoints coûteux
+ * (analyse, recherche d'emploi, extraction de CV).
+ * Avec les threads virtuels, une requête en attente ne coûte plus de thread de plateforme :
+ * sans cette limite, des milliers de requêtes partiraient en même temps vers les fournisseurs.
+ * Au-delà de max-concurrent, une requête attend au plus max-wait-ms dans une file
+ * de max-queued places, puis reçoit un 503 avec Retry-After.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${concurrency.limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${concurrency.limit.analysis.max-concurrent:8}")
+    private int analysisMaxConcurrent;
+
+    @Value("${concurrency.limit.job-research.max-concurrent:8}")
+    private int jobResearchMaxConcurrent;
+
+    @Value("${concurrency.limit.cv-extraction.max-concurrent:8}")
+    private int cvExtractionMaxConcurrent;
+
+    @Value("${concurrency.limit.max-queued:100}")
+    private int maxQueued;
+
+    @Value("${concurrency.limit.max-wait-ms:10000}")
+    private long maxWaitMs;
+
+    @Value("${concurrency.limit.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    // Préfixe d'URL -> limite ; chaque groupe a ses propres places
+    private final Map<String, Limit> limits = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        limits.put("/api/analysis", new Limit(analysisMaxConcurrent));
+        limits.put("/api/job-research", new Limit(jobResearchMaxConcurrent));
+        limits.put("/api/cv-extraction", new Limit(cvExtractionMaxConcurrent));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Seuls les traitements (POST) consomment une place : santé, suivi des recherches et CORS passent
+        return !enabled
+            || HttpMethod.OPTIONS.matches(request.getMethod())
+            || HttpMethod.GET.matches(request.getMethod())
+            || findLimit(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Limit limit = findLimit(request);
+        if (!limit.tryAcquire(maxQueued, maxWaitMs)) {
+            logger.warn("Requête refusée, trop de traitements en cours sur {}", request.getRequestURI());
+            reject(response);
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                limit.release();
+            }
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Contrôleur asynchrone : la place est rendue à la fin du traitement, pas au retour du filtre
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private Limit findLimit(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<String, Limit> entry : limits.entrySet()) {
+            if (path.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        Map<String, String> error = new LinkedHashMap<>();
+        error.put("error", "Trop de requêtes en cours de traitement, réessayez plus tard");
+        error.put("timestamp", LocalDateTime.now().toString());
+
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(error));
+    }
+
+    /**
+     * Occupation de chaque groupe d'endpoints (places utilisées, file d'attente, refus)
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        limits.forEach((prefix, limit) -> stats.put(prefix, limit.getStats()));
+        return stats;
+    }
+
+    /**
+     * Places d'un groupe d'endpoints, avec une file d'attente bornée
+     */
+    private static class Limit {
+
+        private final int maxConcurrent;
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        Limit(int maxConcurrent) {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            this.permits = new Semaphore(this.maxConcurrent, true);
+        }
+
+        boolean tryAcquire(int maxQueued, long maxWaitMs) {
+            if (permits.tryAcquire()) {
+                return true;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                rejected.incrementAndGet();
+                return false;
+            }
+            try {
+                if (permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                queued.decrementAndGet();
+            }
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        void release() {
+            permits.release();
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("inUse", maxConcurrent - permits.availablePermits());
+            stats.put("queued", queued.get());
+            stats.put("rejected", rejected.get());
+            return stats;
+        }
+    }
+
+    private static class ReleasingListener implements AsyncListener {
+
+        private final Runnable release;
+
+        ReleasingListener(Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Nouveau cycle asynchrone : on reste inscrit pour sa fin
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
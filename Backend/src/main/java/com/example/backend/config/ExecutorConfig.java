@@ -0,0 +1,108 @@
+package com.example.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécuteurs de la couche service.
+ * Avec spring.threads.virtual.enabled=true, Tomcat traite déjà chaque requête sur un thread virtuel ;
+ * les suites des appels asynchrones (parsing des réponses, nouvelles tentatives différées)
+ * tournent alors aussi sur des threads virtuels, hors des threads d'I/O du client HTTP.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    // Taille du pool de plateforme utilisé quand les threads virtuels sont désactivés
+    @Value("${upstream.callback.threads:8}")
+    private int callbackThreads;
+
+    // 0 : moitié des processeurs disponibles
+    @Value("${cv.extraction.image.threads:0}")
+    private int imageThreads;
+
+    @Value("${cv.extraction.image.max-queued:32}")
+    private int imageMaxQueued;
+
+    @Bean(name = "upstreamCallbackExecutor", destroyMethod = "shutdown")
+    public ExecutorService upstreamCallbackExecutor() {
+        if (virtualThreadsEnabled) {
+            logger.info("Suites des appels externes exécutées sur des threads virtuels");
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("upstream-callback-", 0).factory());
+        }
+        logger.info("Suites des appels externes exécutées sur un pool de {} threads", callbackThreads);
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, callbackThreads), runnable -> {
+            Thread thread = new Thread(runnable, "upstream-callback-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Exécution des recherches d'emploi de la file d'attente ; leur nombre est borné
+     * par job.research.queue.workers, pas par la taille de l'exécuteur
+     */
+    @Bean(name = "jobResearchExecutor", destroyMethod = "shutdown")
+    public ExecutorService jobResearchExecutor() {
+        if (virtualThreadsEnabled) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-research-", 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "job-research-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Extractions des envois groupés de CV ; le parallélisme est borné par cv.extraction.bulk.parallelism
+     */
+    @Bean(name = "bulkExtractionExecutor", destroyMethod = "shutdown")
+    public ExecutorService bulkExtractionExecutor() {
+        if (virtualThreadsEnabled) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bulk-extraction-", 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-extraction-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Normalisation des images de CV (décodage, redimensionnement, compression) : travail CPU,
+     * donc toujours sur un pool borné de threads de plateforme, même avec les threads virtuels.
+     * File d'attente bornée : une tâche refusée laisse l'image partir telle quelle.
+     */
+    @Bean(name = "cvImageExecutor", destroyMethod = "shutdown")
+    public ExecutorService cvImageExecutor() {
+        int threads = imageThreads > 0 ? imageThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        logger.info("Normalisation des images de CV sur un pool de {} threads", threads);
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, imageMaxQueued)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cv-image-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -5,11 +5,17 @@ import com.example.backend.dto.CvAnalysisResponse;
 import com.example.backend.service.AIAnalysisService;
 import com.example.backend.service.GeminiCvExtractionService;
 import com.example.backend.service.GeminiCvExtractionService.CvStructuredData;
+import com.example.backend.upstream.UpstreamUnavailableException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/analysis")
 @CrossOrigin(origins = "*")
@@ -20,6 +26,9 @@ public class AIAnalysisController {
     
     @Autowired
     private GeminiCvExtractionService geminiCvExtractionService;
+
+    @Value("${upstream.async.enabled:false}")
+    private boolean asyncEnabled;
     
     @PostMapping("/cv")
     public ResponseEntity<CvAnalysisResponse> analyzeCv(@RequestBody CvAnalysisRequest request) {
@@ -27,14 +36,24 @@ public class AIAnalysisController {
             CvAnalysisResponse response = aiAnalysisService.analyzeCv(request);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return toErrorResponse(e);
         }
     }
     
     @PostMapping("/cv/upload")
-    public ResponseEntity<CvAnalysisResponse> analyzeCvWithFile(
+    public CompletableFuture<ResponseEntity<CvAnalysisResponse>> analyzeCvWithFile(
             @RequestParam("file") MultipartFile file, 
             @RequestParam("jobDescription") String jobDescription) {
+        if (asyncEnabled) {
+            // Extraction Gemini puis analyse OpenAI/Google sans bloquer le thread servlet
+            return geminiCvExtractionService.extractCvDataAsync(file)
+                .thenCompose(cvData -> aiAnalysisService.analyzeCvAsync(
+                    new CvAnalysisRequest(cvData.toPlainText(), jobDescription)))
+                .handle((response, error) -> error == null
+                    ? ResponseEntity.ok(response)
+                    : toErrorResponse(error));
+        }
+
         try {
             
             // Utiliser Gemini Vision pour extraire les données du CV (PDF, images, etc.)
@@ -48,9 +67,9 @@ public class AIAnalysisController {
             request.setJobDescription(jobDescription);
             
             CvAnalysisResponse response = aiAnalysisService.analyzeCv(request);
-            return ResponseEntity.ok(response);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(toErrorResponse(e));
         }
     }
     
@@ -63,8 +82,20 @@ public class AIAnalysisController {
             CvAnalysisResponse response = aiAnalysisService.analyzeCv(request);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return toErrorResponse(e);
         }
-    } 
+    }
 
+    /**
+     * 503 avec Retry-After si un fournisseur est indisponible, 400 sinon
+     */
+    private <T> ResponseEntity<T> toErrorResponse(Throwable e) {
+        UpstreamUnavailableException unavailable = UpstreamUnavailableException.findIn(e);
+        if (unavailable != null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                .build();
+        }
+        return ResponseEntity.badRequest().build();
+    }
 }
@@ -1,11 +1,41 @@
 package com.example.backend.controller;
 
+import com.example.backend.service.BulkCvExtractionService;
+import com.example.backend.service.BulkCvExtractionService.BulkItemResult;
+import com.example.backend.service.CvExtractionProfile;
 import com.example.backend.service.GeminiCvExtractionService;
 import com.example.backend.service.GeminiCvExtractionService.CvStructuredData;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.DeadlineExceededException;
+import com.example.backend.upstream.UpstreamUnavailableException;
+import com.example.backend.utils.TempCvFile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Controller pour tester l'extraction de CV avec Gemini Vision
@@ -14,24 +44,180 @@ import org.springframework.web.multipart.MultipartFile;
 @RequestMapping("/api/cv-extraction")
 @CrossOrigin(origins = "*")
 public class CvExtractionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CvExtractionController.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Type utilisé pour écrire chaque ligne NDJSON déjà sérialisée, en UTF-8
+    private static final MediaType NDJSON_LINE = new MediaType("text", "plain", StandardCharsets.UTF_8);
     
     @Autowired
     private GeminiCvExtractionService geminiCvExtractionService;
+
+    @Autowired
+    private BulkCvExtractionService bulkCvExtractionService;
+
+    @Autowired
+    @Qualifier("bulkExtractionExecutor")
+    private ExecutorService bulkExtractionExecutor;
+
+    @Value("${cv.extraction.bulk.timeout-ms:600000}")
+    private long bulkTimeoutMs;
+
+    @Value("${upstream.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${cv.extraction.deadline-ms:45000}")
+    private long deadlineMs;
     
     /**
      * Endpoint pour extraire les données structurées d'un CV
      * Supporte: PDF, Images (JPG, PNG), TXT, DOCX
      * 
      * @param file Le fichier CV à analyser
+     * @param profile Sections à extraire : FULL (défaut), JOB_SEARCH ou SKILLS_ONLY
      * @return Les données structurées du CV en JSON
      */
     @PostMapping("/extract")
-    public ResponseEntity<CvStructuredData> extractCvData(@RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<CvStructuredData>> extractCvData(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "profile", defaultValue = "FULL") CvExtractionProfile profile) {
+        Deadline deadline = Deadline.after(Duration.ofMillis(deadlineMs));
+        if (asyncEnabled) {
+            return geminiCvExtractionService.extractCvDataAsync(file, profile, deadline)
+                .handle((cvData, error) -> error == null
+                    ? ResponseEntity.ok(cvData)
+                    : toErrorResponse(error));
+        }
+
         try {
-            CvStructuredData cvData = geminiCvExtractionService.extractCvData(file);
-            return ResponseEntity.ok(cvData);
+            CvStructuredData cvData = geminiCvExtractionService.extractCvData(file, profile, deadline);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(cvData));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(toErrorResponse(e));
+        }
+    }
+    
+    /**
+     * Même extraction, diffusée en NDJSON (Accept: application/x-ndjson) :
+     * une ligne {"section": ..., "data": ...} par section dès qu'elle est extraite,
+     * puis {"done": true}, ou {"error": ..., "status": ...} en cas d'échec
+     */
+    @PostMapping(value = "/extract", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> extractCvDataStream(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "profile", defaultValue = "FULL") CvExtractionProfile profile) throws IOException {
+        Deadline deadline = Deadline.after(Duration.ofMillis(deadlineMs));
+        // Copie sur disque : l'extraction se poursuit après le retour du contrôleur
+        TempCvFile cv = TempCvFile.spool(file);
+
+        StreamingResponseBody body = output -> {
+            try (cv) {
+                geminiCvExtractionService.extractCvDataStreaming(cv, profile, deadline, (section, data) -> {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("section", section);
+                    line.put("data", data);
+                    writeLine(output, line);
+                });
+                writeLine(output, Map.of("done", true));
+            } catch (UncheckedIOException e) {
+                // Client déconnecté
+                logger.debug("Flux d'extraction interrompu: {}", e.getMessage());
+            } catch (Exception e) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("error", "Erreur lors de l'extraction: " + e.getMessage());
+                line.put("status", toErrorResponse(e).getStatusCode().value());
+                writeLine(output, line);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Extraction groupée (recruteurs) : plusieurs fichiers et/ou archives zip dans le champ "files".
+     * Réponse NDJSON, une ligne par fichier dans l'ordre d'achèvement :
+     * {"index", "file", "status": "ok", "data"} ou {"index", "file", "status": "error", "error", "httpStatus"},
+     * puis {"done": true, "total", "succeeded", "failed"}
+     */
+    @PostMapping(value = "/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> extractBulk(@RequestParam("files") MultipartFile[] files) {
+        List<TempCvFile> cvFiles;
+        try {
+            cvFiles = bulkCvExtractionService.unpack(files);
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", e.getMessage()));
+        }
+        if (cvFiles.isEmpty()) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "Aucun fichier à extraire"));
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkTimeoutMs);
+        AtomicInteger succeeded = new AtomicInteger();
+        // Client déconnecté ou délai dépassé : plus aucun fichier n'est envoyé à Gemini
+        AtomicBoolean cancelled = new AtomicBoolean();
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(error -> cancelled.set(true));
+        bulkExtractionExecutor.execute(() -> {
+            try {
+                bulkCvExtractionService.extractAll(cvFiles, cancelled, result -> {
+                    if (result.isSuccess()) {
+                        succeeded.incrementAndGet();
+                    }
+                    sendLine(emitter, toBulkLine(result));
+                });
+                if (cancelled.get()) {
+                    return;
+                }
+                Map<String, Object> done = new LinkedHashMap<>();
+                done.put("done", true);
+                done.put("total", cvFiles.size());
+                done.put("succeeded", succeeded.get());
+                done.put("failed", cvFiles.size() - succeeded.get());
+                sendLine(emitter, done);
+                emitter.complete();
+            } catch (Exception e) {
+                logger.warn("Extraction groupée interrompue: {}", e.getMessage());
+                emitter.completeWithError(e);
+            } finally {
+                bulkCvExtractionService.release(cvFiles);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    private Map<String, Object> toBulkLine(BulkItemResult result) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", result.getIndex());
+        line.put("file", result.getFileName());
+        if (result.isSuccess()) {
+            line.put("status", "ok");
+            line.put("data", result.getData());
+        } else {
+            line.put("status", "error");
+            line.put("error", result.getError().getMessage());
+            line.put("httpStatus", toErrorResponse(result.getError()).getStatusCode().value());
+        }
+        return line;
+    }
+
+    private void sendLine(ResponseBodyEmitter emitter, Map<String, Object> line) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(line) + "\n", NDJSON_LINE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(OutputStream output, Map<String, Object> line) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(line));
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
     
@@ -46,7 +232,23 @@ public class CvExtractionController {
             String plainText = cvData.toPlainText();
             return ResponseEntity.ok(plainText);
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return toErrorResponse(e);
+        }
+    }
+
+    /**
+     * 503 avec Retry-After si un fournisseur est indisponible, 504 si le délai est dépassé, 400 sinon
+     */
+    private <T> ResponseEntity<T> toErrorResponse(Throwable e) {
+        if (DeadlineExceededException.findIn(e) != null) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+        }
+        UpstreamUnavailableException unavailable = UpstreamUnavailableException.findIn(e);
+        if (unavailable != null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                .build();
         }
+        return ResponseEntity.badRequest().build();
     }
 }
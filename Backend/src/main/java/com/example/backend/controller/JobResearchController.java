@@ -1,17 +1,40 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.CvProfile;
 import com.example.backend.dto.JobResearchResponse;
+import com.example.backend.dto.JobResult;
+import com.example.backend.service.JobResearchListener;
+import com.example.backend.service.JobResearchQueue;
 import com.example.backend.service.JobResearchService;
+import com.example.backend.service.JobResearchStage;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.DeadlineExceededException;
+import com.example.backend.upstream.Futures;
+import com.example.backend.upstream.UpstreamUnavailableException;
+import com.example.backend.utils.TempCvFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controller pour la recherche d'emploi basée sur un CV
@@ -26,6 +49,20 @@ public class JobResearchController {
     @Autowired
     private JobResearchService jobResearchService;
 
+    @Autowired
+    private JobResearchQueue jobResearchQueue;
+
+    @Autowired
+    @Qualifier("jobResearchExecutor")
+    private ExecutorService jobResearchExecutor;
+
+    @Value("${upstream.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    // Budget total d'une recherche, partagé entre Gemini, OpenAI et Google
+    @Value("${job.research.deadline-ms:30000}")
+    private long deadlineMs;
+
     // Tailles maximales autorisées
     private static final long MAX_FILE_SIZE = 20 * 1024 * 1024; // 10MB
 
@@ -35,53 +72,312 @@ public class JobResearchController {
      * @param file Le fichier CV (PDF, DOCX, Image)
      * @param location La localisation souhaitée (défaut: Antananarivo)
      * @param includeRemote Inclure les postes remote (défaut: true)
+     * @param maxResults Nombre de résultats Google souhaités, de 1 à 100 (défaut: 10)
      * @return JobResearchResponse avec la requête Google, le profil et les résultats
      */
     @PostMapping("/analyze")
-    public ResponseEntity<?> analyzeAndSearch(
+    public CompletableFuture<ResponseEntity<?>> analyzeAndSearch(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "location", defaultValue = "Antananarivo") String location,
-            @RequestParam(value = "includeRemote", defaultValue = "true") Boolean includeRemote) {
+            @RequestParam(value = "includeRemote", defaultValue = "true") Boolean includeRemote,
+            @RequestParam(value = "maxResults", defaultValue = "10") Integer maxResults) {
         
         logger.info("===== REQUÊTE DE RECHERCHE D'EMPLOI =====");
         logger.info("Fichier: {}, Taille: {} bytes", file.getOriginalFilename(), file.getSize());
-        logger.info("Location: {}, Include Remote: {}", location, includeRemote);
+        logger.info("Location: {}, Include Remote: {}, Max résultats: {}", location, includeRemote, maxResults);
+
+        Deadline deadline = Deadline.after(Duration.ofMillis(deadlineMs));
+
+        // Validation du fichier
+        ResponseEntity<?> validationError = validateFile(file, maxResults);
+        if (validationError != null) {
+            return CompletableFuture.completedFuture(validationError);
+        }
+
+        if (asyncEnabled) {
+            // Le thread servlet est libéré pendant les appels Gemini, OpenAI et Google
+            return jobResearchService.analyzeAndSearchAsync(
+                    file, location, includeRemote, maxResults, deadline, JobResearchListener.NONE)
+                .handle((response, error) -> error == null
+                    ? toSuccessResponse(response)
+                    : toErrorResponse(Futures.unwrap(error)));
+        }
 
         try {
-            // Validation du fichier
-            if (file.isEmpty()) {
-                logger.warn("Fichier vide reçu");
-                return ResponseEntity.badRequest()
-                    .body(createErrorResponse("Le fichier est vide"));
-            }
+            // Effectuer l'analyse et la recherche
+            JobResearchResponse response = jobResearchService.analyzeAndSearch(
+                file, location, includeRemote, maxResults, deadline, JobResearchListener.NONE);
+            return CompletableFuture.completedFuture(toSuccessResponse(response));
 
-            if (file.getSize() > MAX_FILE_SIZE) {
-                logger.warn("Fichier trop volumineux: {} bytes", file.getSize());
-                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
-                    .body(createErrorResponse("Le fichier est trop volumineux (max 10MB)"));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(toErrorResponse(e));
+        }
+    }
+
+    /**
+     * Même recherche que /analyze, diffusée en Server-Sent Events au fil des étapes :
+     * "stage" au début de chaque étape, puis "profile" dès la fin de l'extraction,
+     * "query" dès que la requête est générée, "results" avec les offres,
+     * et enfin "done" (réponse complète) ou "error".
+     */
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> analyzeAndSearchStream(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "location", defaultValue = "Antananarivo") String location,
+            @RequestParam(value = "includeRemote", defaultValue = "true") Boolean includeRemote,
+            @RequestParam(value = "maxResults", defaultValue = "10") Integer maxResults) {
+
+        logger.info("===== REQUÊTE DE RECHERCHE D'EMPLOI (flux) =====");
+        ResponseEntity<?> validationError = validateFile(file, maxResults);
+        if (validationError != null) {
+            return validationError;
+        }
+
+        TempCvFile cv;
+        try {
+            // Copie sur disque : le traitement continue après le retour du contrôleur
+            cv = TempCvFile.spool(file);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Lecture du fichier impossible"));
+        }
+
+        Deadline deadline = Deadline.after(Duration.ofMillis(deadlineMs));
+        SseEmitter emitter = new SseEmitter(deadlineMs + 5000);
+        SseProgressListener listener = new SseProgressListener(emitter);
+        // Client déconnecté ou délai dépassé : la recherche s'arrête à l'étape suivante
+        emitter.onTimeout(listener::cancel);
+        emitter.onError(error -> listener.cancel());
+
+        if (asyncEnabled) {
+            CompletableFuture<JobResearchResponse> search =
+                jobResearchService.analyzeAndSearchAsync(cv, location, includeRemote, maxResults, deadline, listener);
+            emitter.onCompletion(() -> {
+                listener.cancel();
+                search.cancel(false);
+                deleteQuietly(cv);
+            });
+            search.whenComplete((response, error) -> completeStream(emitter, listener, response, error));
+        } else {
+            emitter.onCompletion(() -> {
+                listener.cancel();
+                deleteQuietly(cv);
+            });
+            jobResearchExecutor.execute(() -> {
+                try {
+                    JobResearchResponse response = jobResearchService.analyzeAndSearch(
+                        cv, location, includeRemote, maxResults, deadline, listener);
+                    completeStream(emitter, listener, response, null);
+                } catch (Exception e) {
+                    completeStream(emitter, listener, null, e);
+                }
+            });
+        }
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    /**
+     * Envoie l'événement final ("done" ou "error") et ferme le flux
+     */
+    @SuppressWarnings("unchecked")
+    private void completeStream(SseEmitter emitter, SseProgressListener listener,
+                                JobResearchResponse response, Throwable error) {
+        if (listener.isCancelled()) {
+            logger.debug("Flux de recherche abandonné par le client");
+            return;
+        }
+        try {
+            if (error == null) {
+                logger.info("Flux de recherche terminé - {} résultats", response.getJobResults().size());
+                emitter.send(SseEmitter.event().name("done").data(response));
+            } else {
+                ResponseEntity<?> errorResponse = toErrorResponse(Futures.unwrap(error));
+                Map<String, Object> body = new HashMap<>((Map<String, Object>) errorResponse.getBody());
+                body.put("status", errorResponse.getStatusCode().value());
+                emitter.send(SseEmitter.event().name("error").data(body));
             }
+            emitter.complete();
+        } catch (Exception e) {
+            // Client déconnecté
+            logger.debug("Flux de recherche interrompu: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Supprime le fichier temporaire d'une recherche en flux
+     */
+    private void deleteQuietly(TempCvFile cv) {
+        try {
+            cv.close();
+        } catch (IOException e) {
+            logger.debug("Fichier temporaire non supprimé: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Transmet chaque étape et chaque résultat intermédiaire au client.
+     * Une fois le client parti, chaque signal lève une CancellationException qui arrête la recherche.
+     */
+    private class SseProgressListener implements JobResearchListener {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
 
-            // Validation du type de fichier
-            String contentType = file.getContentType();
-            if (contentType == null || !isValidFileType(contentType)) {
-                logger.warn("Type de fichier non supporté: {}", contentType);
-                return ResponseEntity.badRequest()
-                    .body(createErrorResponse("Type de fichier non supporté. Utilisez PDF, DOCX ou images"));
+        SseProgressListener(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void cancel() {
+            cancelled.set(true);
+        }
+
+        boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        @Override
+        public void onStage(JobResearchStage stage) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("stage", stage.name());
+            data.put("number", stage.getNumber());
+            data.put("label", stage.getLabel());
+            send("stage", data);
+        }
+
+        @Override
+        public void onProfile(CvProfile profile) {
+            send("profile", profile);
+        }
+
+        @Override
+        public void onQuery(String googleQuery) {
+            send("query", Map.of("googleQuery", googleQuery));
+        }
+
+        @Override
+        public void onResults(List<JobResult> jobResults) {
+            send("results", jobResults);
+        }
+
+        private void send(String name, Object data) {
+            if (cancelled.get()) {
+                throw new CancellationException("Flux de recherche abandonné par le client");
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } catch (Exception e) {
+                // Client déconnecté : inutile de poursuivre les étapes suivantes
+                logger.debug("Événement {} non envoyé, recherche interrompue: {}", name, e.getMessage());
+                cancelled.set(true);
+                emitter.completeWithError(e);
+                throw new CancellationException("Flux de recherche abandonné par le client");
             }
+        }
+    }
 
-            // Effectuer l'analyse et la recherche
-            JobResearchResponse response = jobResearchService.analyzeAndSearch(file, location, includeRemote);
+    /**
+     * Met une recherche d'emploi en file d'attente et retourne immédiatement son identifiant (202).
+     * Le résultat se consulte ensuite sur GET /api/job-research/jobs/{id}.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "location", defaultValue = "Antananarivo") String location,
+            @RequestParam(value = "includeRemote", defaultValue = "true") Boolean includeRemote,
+            @RequestParam(value = "maxResults", defaultValue = "10") Integer maxResults) {
 
-            logger.info("Recherche terminée avec succès - {} résultats trouvés", 
-                response.getJobResults().size());
+        ResponseEntity<?> validationError = validateFile(file, maxResults);
+        if (validationError != null) {
+            return validationError;
+        }
 
-            return ResponseEntity.ok(response);
+        try {
+            UUID jobId = jobResearchQueue.submit(file, location, includeRemote, maxResults);
+            String statusUrl = "/api/job-research/jobs/" + jobId;
 
+            Map<String, String> body = new HashMap<>();
+            body.put("jobId", jobId.toString());
+            body.put("status", "EN_ATTENTE");
+            body.put("statusUrl", statusUrl);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, statusUrl)
+                .body(body);
         } catch (Exception e) {
-            logger.error("Erreur lors de la recherche d'emploi", e);
+            logger.error("Mise en file de la recherche impossible", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(createErrorResponse("Erreur lors de l'analyse: " + e.getMessage()));
+                .body(createErrorResponse("Impossible d'enregistrer la recherche: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * État d'une recherche en file d'attente : statut, étape en cours et résultat une fois terminée
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getJob(@PathVariable("id") UUID id) {
+        return jobResearchQueue.find(id)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(createErrorResponse("Recherche introuvable: " + id)));
+    }
+
+    /**
+     * Valide le fichier uploadé et le nombre de résultats demandés, retourne null s'ils sont acceptables
+     */
+    private ResponseEntity<?> validateFile(MultipartFile file, Integer maxResults) {
+        if (maxResults == null || maxResults < 1 || maxResults > 100) {
+            logger.warn("Nombre de résultats invalide: {}", maxResults);
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse("maxResults doit être compris entre 1 et 100"));
+        }
+
+        if (file.isEmpty()) {
+            logger.warn("Fichier vide reçu");
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse("Le fichier est vide"));
+        }
+
+        if (file.getSize() > MAX_FILE_SIZE) {
+            logger.warn("Fichier trop volumineux: {} bytes", file.getSize());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(createErrorResponse("Le fichier est trop volumineux (max 10MB)"));
         }
+
+        // Validation du type de fichier
+        String contentType = file.getContentType();
+        if (contentType == null || !isValidFileType(contentType)) {
+            logger.warn("Type de fichier non supporté: {}", contentType);
+            return ResponseEntity.badRequest()
+                .body(createErrorResponse("Type de fichier non supporté. Utilisez PDF, DOCX ou images"));
+        }
+
+        return null;
+    }
+
+    private ResponseEntity<?> toSuccessResponse(JobResearchResponse response) {
+        logger.info("Recherche terminée avec succès - {} résultats trouvés", 
+            response.getJobResults().size());
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<?> toErrorResponse(Throwable e) {
+        DeadlineExceededException exceeded = DeadlineExceededException.findIn(e);
+        if (exceeded != null) {
+            logger.warn("Recherche d'emploi abandonnée: {}", exceeded.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(createErrorResponse("La recherche a dépassé le délai autorisé (étape : " + exceeded.getStage() + ")"));
+        }
+
+        UpstreamUnavailableException unavailable = UpstreamUnavailableException.findIn(e);
+        if (unavailable != null) {
+            logger.warn("Recherche d'emploi refusée: {}", unavailable.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                .body(createErrorResponse("Service temporairement indisponible, réessayez plus tard"));
+        }
+
+        logger.error("Erreur lors de la recherche d'emploi", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(createErrorResponse("Erreur lors de l'analyse: " + e.getMessage()));
     }
 
     /**
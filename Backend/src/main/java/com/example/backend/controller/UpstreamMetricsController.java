@@ -0,0 +1,70 @@
+package com.example.backend.controller;
+
+import com.example.backend.cache.CacheRegistry;
+import com.example.backend.config.ConcurrencyLimitFilter;
+import com.example.backend.upstream.UpstreamHttpClient;
+import com.example.backend.upstream.UpstreamRateLimiter;
+import com.example.backend.upstream.UpstreamResilience;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Controller exposant l'état des intégrations externes (pools HTTP, caches, etc.)
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin(origins = "*")
+public class UpstreamMetricsController {
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    @Autowired
+    private UpstreamResilience upstreamResilience;
+
+    @Autowired
+    private UpstreamRateLimiter upstreamRateLimiter;
+
+    @Autowired
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    /**
+     * Statistiques des pools de connexions vers Gemini, OpenAI et Google
+     */
+    @GetMapping("/http-pools")
+    public ResponseEntity<Map<String, Map<String, Integer>>> httpPools() {
+        return ResponseEntity.ok(upstreamHttpClient.getPoolStats());
+    }
+
+    /**
+     * Statistiques des caches applicatifs (taille, hits, misses, évictions)
+     */
+    @GetMapping("/caches")
+    public ResponseEntity<Map<String, Map<String, Object>>> caches() {
+        return ResponseEntity.ok(cacheRegistry.getStats());
+    }
+
+    /**
+     * État des disjoncteurs, bulkheads, limites de débit et quotas de chaque fournisseur
+     */
+    @GetMapping("/upstreams")
+    public ResponseEntity<Map<String, Map<String, Object>>> upstreams() {
+        Map<String, Map<String, Object>> stats = upstreamResilience.getStats();
+        upstreamRateLimiter.getStats().forEach((upstream, rateStats) -> stats.get(upstream).put("rateLimit", rateStats));
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Occupation des limites de concurrence des endpoints d'analyse, de recherche et d'extraction
+     */
+    @GetMapping("/endpoints")
+    public ResponseEntity<Map<String, Map<String, Object>>> endpoints() {
+        return ResponseEntity.ok(concurrencyLimitFilter.getStats());
+    }
+}
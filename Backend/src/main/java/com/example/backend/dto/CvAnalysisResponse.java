@@ -1,5 +1,6 @@
 package com.example.backend.dto;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -13,6 +14,9 @@ public class CvAnalysisResponse {
     private double matchPercentage;
     private Map<String, String> improvements;
     private String overallFeedback;
+    // Compétences dont la recherche de formations n'a pas abouti avant la limite de temps
+    private List<String> skillsWithoutFormations = new ArrayList<>();
+    private boolean formationsPartial;
     
     // Constructors
     public CvAnalysisResponse() {} 
@@ -73,4 +77,20 @@ public class CvAnalysisResponse {
         this.overallFeedback = overallFeedback;
     }
     
+    public List<String> getSkillsWithoutFormations() {
+        return skillsWithoutFormations;
+    }
+    
+    public void setSkillsWithoutFormations(List<String> skillsWithoutFormations) {
+        this.skillsWithoutFormations = skillsWithoutFormations;
+    }
+    
+    public boolean isFormationsPartial() {
+        return formationsPartial;
+    }
+    
+    public void setFormationsPartial(boolean formationsPartial) {
+        this.formationsPartial = formationsPartial;
+    }
+    
 }
@@ -0,0 +1,77 @@
+package com.example.backend.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Résultat d'extraction Gemini persisté, indexé par l'empreinte du fichier
+ * et la version du modèle/prompt utilisée
+ */
+@Entity
+@Table(name = "cv_extraction_cache",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"content_hash", "extraction_version"}),
+    indexes = {
+        @Index(name = "idx_cv_extraction_cache_acces", columnList = "date_dernier_acces")
+    }
+)
+public class CvExtractionRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "extraction_version", nullable = false, length = 100)
+    private String extractionVersion;
+
+    @Column(name = "donnees_json", columnDefinition = "jsonb", nullable = false)
+    @JdbcTypeCode(SqlTypes.JSON)
+    private JsonNode donneesJson;
+
+    @Column(name = "date_creation")
+    private LocalDateTime dateCreation;
+
+    @Column(name = "date_dernier_acces")
+    private LocalDateTime dateDernierAcces;
+
+    @PrePersist
+    protected void onCreate() {
+        dateCreation = LocalDateTime.now();
+        dateDernierAcces = dateCreation;
+    }
+
+    // Constructors
+    public CvExtractionRecord() {
+    }
+
+    public CvExtractionRecord(String contentHash, String extractionVersion, JsonNode donneesJson) {
+        this.contentHash = contentHash;
+        this.extractionVersion = extractionVersion;
+        this.donneesJson = donneesJson;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getExtractionVersion() { return extractionVersion; }
+    public void setExtractionVersion(String extractionVersion) { this.extractionVersion = extractionVersion; }
+
+    public JsonNode getDonneesJson() { return donneesJson; }
+    public void setDonneesJson(JsonNode donneesJson) { this.donneesJson = donneesJson; }
+
+    public LocalDateTime getDateCreation() { return dateCreation; }
+    public void setDateCreation(LocalDateTime dateCreation) { this.dateCreation = dateCreation; }
+
+    public LocalDateTime getDateDernierAcces() { return dateDernierAcces; }
+    public void setDateDernierAcces(LocalDateTime dateDernierAcces) { this.dateDernierAcces = dateDernierAcces; }
+}
@@ -0,0 +1,172 @@
+package com.example.backend.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Recherche d'emploi en file d'attente : le CV est conservé jusqu'au traitement,
+ * puis remplacé par le résultat (requête, profil, offres) ou le message d'erreur
+ */
+@Entity
+@Table(name = "job_research_jobs",
+    indexes = {
+        @Index(name = "idx_job_research_jobs_statut", columnList = "statut, date_creation")
+    }
+)
+public class JobResearchJob {
+
+    public enum Statut {
+        EN_ATTENTE,
+        EN_COURS,
+        TERMINE,
+        ECHEC
+    }
+
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    private Statut statut;
+
+    @Column(name = "etape", length = 20)
+    private String etape;
+
+    @Column(name = "nom_fichier", length = 255)
+    private String nomFichier;
+
+    @Column(name = "type_contenu", length = 150)
+    private String typeContenu;
+
+    @Column(name = "contenu_fichier", columnDefinition = "bytea")
+    private byte[] contenuFichier;
+
+    @Column(name = "localisation", length = 100)
+    private String localisation;
+
+    @Column(name = "inclure_remote")
+    private Boolean inclureRemote;
+
+    @Column(name = "max_resultats")
+    private Integer maxResultats;
+
+    @Column(name = "requete_google", columnDefinition = "TEXT")
+    private String requeteGoogle;
+
+    @Column(name = "profil_json", columnDefinition = "jsonb")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private JsonNode profilJson;
+
+    @Column(name = "resultats_json", columnDefinition = "jsonb")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private JsonNode resultatsJson;
+
+    @Column(name = "message_erreur", length = 1000)
+    private String messageErreur;
+
+    @Column(name = "tentatives", nullable = false)
+    private int tentatives;
+
+    @Column(name = "worker_id", length = 100)
+    private String workerId;
+
+    @Column(name = "date_creation")
+    private LocalDateTime dateCreation;
+
+    @Column(name = "date_debut")
+    private LocalDateTime dateDebut;
+
+    @Column(name = "date_heartbeat")
+    private LocalDateTime dateHeartbeat;
+
+    @Column(name = "date_fin")
+    private LocalDateTime dateFin;
+
+    @PrePersist
+    protected void onCreate() {
+        if (id == null) {
+            id = UUID.randomUUID();
+        }
+        if (statut == null) {
+            statut = Statut.EN_ATTENTE;
+        }
+        dateCreation = LocalDateTime.now();
+    }
+
+    // Constructors
+    public JobResearchJob() {
+    }
+
+    public JobResearchJob(String nomFichier, String typeContenu, byte[] contenuFichier, String localisation,
+                          Boolean inclureRemote, Integer maxResultats) {
+        this.nomFichier = nomFichier;
+        this.typeContenu = typeContenu;
+        this.contenuFichier = contenuFichier;
+        this.localisation = localisation;
+        this.inclureRemote = inclureRemote;
+        this.maxResultats = maxResultats;
+    }
+
+    // Getters and Setters
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+
+    public Statut getStatut() { return statut; }
+    public void setStatut(Statut statut) { this.statut = statut; }
+
+    public String getEtape() { return etape; }
+    public void setEtape(String etape) { this.etape = etape; }
+
+    public String getNomFichier() { return nomFichier; }
+    public void setNomFichier(String nomFichier) { this.nomFichier = nomFichier; }
+
+    public String getTypeContenu() { return typeContenu; }
+    public void setTypeContenu(String typeContenu) { this.typeContenu = typeContenu; }
+
+    public byte[] getContenuFichier() { return contenuFichier; }
+    public void setContenuFichier(byte[] contenuFichier) { this.contenuFichier = contenuFichier; }
+
+    public String getLocalisation() { return localisation; }
+    public void setLocalisation(String localisation) { this.localisation = localisation; }
+
+    public Boolean getInclureRemote() { return inclureRemote; }
+    public void setInclureRemote(Boolean inclureRemote) { this.inclureRemote = inclureRemote; }
+
+    public Integer getMaxResultats() { return maxResultats; }
+    public void setMaxResultats(Integer maxResultats) { this.maxResultats = maxResultats; }
+
+    public String getRequeteGoogle() { return requeteGoogle; }
+    public void setRequeteGoogle(String requeteGoogle) { this.requeteGoogle = requeteGoogle; }
+
+    public JsonNode getProfilJson() { return profilJson; }
+    public void setProfilJson(JsonNode profilJson) { this.profilJson = profilJson; }
+
+    public JsonNode getResultatsJson() { return resultatsJson; }
+    public void setResultatsJson(JsonNode resultatsJson) { this.resultatsJson = resultatsJson; }
+
+    public String getMessageErreur() { return messageErreur; }
+    public void setMessageErreur(String messageErreur) { this.messageErreur = messageErreur; }
+
+    public int getTentatives() { return tentatives; }
+    public void setTentatives(int tentatives) { this.tentatives = tentatives; }
+
+    public String getWorkerId() { return workerId; }
+    public void setWorkerId(String workerId) { this.workerId = workerId; }
+
+    public LocalDateTime getDateCreation() { return dateCreation; }
+    public void setDateCreation(LocalDateTime dateCreation) { this.dateCreation = dateCreation; }
+
+    public LocalDateTime getDateDebut() { return dateDebut; }
+    public void setDateDebut(LocalDateTime dateDebut) { this.dateDebut = dateDebut; }
+
+    public LocalDateTime getDateHeartbeat() { return dateHeartbeat; }
+    public void setDateHeartbeat(LocalDateTime dateHeartbeat) { this.dateHeartbeat = dateHeartbeat; }
+
+    public LocalDateTime getDateFin() { return dateFin; }
+    public void setDateFin(LocalDateTime dateFin) { this.dateFin = dateFin; }
+}
@@ -0,0 +1,35 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.CvExtractionRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CvExtractionRecordRepository extends JpaRepository<CvExtractionRecord, Long> {
+
+    Optional<CvExtractionRecord> findByContentHashAndExtractionVersion(String contentHash, String extractionVersion);
+
+    /**
+     * Extractions les plus récemment utilisées pour une version donnée (préchauffage)
+     */
+    List<CvExtractionRecord> findByExtractionVersionOrderByDateDernierAccesDesc(String extractionVersion, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CvExtractionRecord r SET r.dateDernierAcces = :date WHERE r.id = :id")
+    void touch(@Param("id") Long id, @Param("date") LocalDateTime date);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CvExtractionRecord r WHERE r.dateDernierAcces < :limite")
+    int deleteNotAccessedSince(@Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,58 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.JobResearchJob;
+import com.example.backend.model.JobResearchJob.Statut;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface JobResearchJobRepository extends JpaRepository<JobResearchJob, UUID> {
+
+    /**
+     * Verrouille les plus anciennes recherches en attente, en sautant celles déjà prises
+     * par une autre instance (à appeler dans une transaction)
+     */
+    @Query(value = "SELECT * FROM job_research_jobs WHERE statut = 'EN_ATTENTE' " +
+            "ORDER BY date_creation LIMIT :limite FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<JobResearchJob> lockPending(@Param("limite") int limite);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobResearchJob j SET j.etape = :etape, j.dateHeartbeat = :date WHERE j.id = :id")
+    void updateStage(@Param("id") UUID id, @Param("etape") String etape, @Param("date") LocalDateTime date);
+
+    /**
+     * Remet en attente les recherches dont le worker ne donne plus signe de vie
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobResearchJob j SET j.statut = :enAttente, j.etape = null, j.workerId = null " +
+            "WHERE j.statut = :enCours AND j.dateHeartbeat < :limite AND j.tentatives < :maxTentatives")
+    int requeueStale(@Param("limite") LocalDateTime limite, @Param("maxTentatives") int maxTentatives,
+                     @Param("enAttente") Statut enAttente, @Param("enCours") Statut enCours);
+
+    /**
+     * Abandonne les recherches bloquées qui ont épuisé leurs tentatives
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobResearchJob j SET j.statut = :echec, j.contenuFichier = null, j.dateFin = :maintenant, " +
+            "j.messageErreur = 'Traitement interrompu trop de fois' " +
+            "WHERE j.statut = :enCours AND j.dateHeartbeat < :limite AND j.tentatives >= :maxTentatives")
+    int failStale(@Param("limite") LocalDateTime limite, @Param("maxTentatives") int maxTentatives,
+                  @Param("maintenant") LocalDateTime maintenant,
+                  @Param("echec") Statut echec, @Param("enCours") Statut enCours);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM JobResearchJob j WHERE j.statut IN :statuts AND j.dateFin < :limite")
+    int deleteFinishedBefore(@Param("statuts") List<Statut> statuts, @Param("limite") LocalDateTime limite);
+}
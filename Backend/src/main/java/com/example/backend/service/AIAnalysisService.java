@@ -1,27 +1,37 @@
 package com.example.backend.service;
 
+import com.example.backend.cache.CacheRegistry;
+import com.example.backend.cache.TtlCache;
 import com.example.backend.dto.CvAnalysisRequest;
 import com.example.backend.dto.CvAnalysisResponse; 
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.Futures;
+import com.example.backend.upstream.Upstream;
+import com.example.backend.upstream.UpstreamHttpClient;
+import com.example.backend.upstream.UpstreamResponse;
+import com.example.backend.upstream.UpstreamUnavailableException;
+import com.example.backend.utils.HashUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper; 
+import jakarta.annotation.PostConstruct;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory; 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.example.backend.model.FormationRecommendation;
 import com.example.backend.utils.IASearchUtils;
@@ -32,59 +42,126 @@ public class AIAnalysisService {
 
     private static final Logger logger = LoggerFactory.getLogger(AIAnalysisService.class);
 
+    private static final String OPENAI_URL = "https://api.openai.com/v1/chat/completions";
+
+    private static final String SKILL_ANALYSIS_MODEL = "gpt-4o-mini";
+
     @Value("${openai.api.key}")
     private String openAiKey;
 
-    @Value("${google.api.key}")
-    private String googleApiKey;
+    @Value("${analysis.formations.parallelism:4}")
+    private int formationParallelism;
+
+    @Value("${analysis.formations.deadline-ms:8000}")
+    private long formationDeadlineMs;
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Value("${analysis.skills.cache.max-entries:1000}")
+    private int skillAnalysisCacheMaxEntries;
+
+    @Value("${analysis.skills.cache.ttl-minutes:1440}")
+    private long skillAnalysisCacheTtlMinutes;
+
+    @Value("${analysis.formations.cache.max-entries:2000}")
+    private int formationCacheMaxEntries;
+
+    @Value("${analysis.formations.cache.fresh-minutes:1440}")
+    private long formationCacheFreshMinutes;
 
-    @Value("${google.search.engine.id}")
-    private String googleSearchEngineId;
+    @Value("${analysis.formations.cache.max-stale-days:30}")
+    private long formationCacheMaxStaleDays;
+
+    @Autowired
+    private GoogleCustomSearchClient customSearchClient;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
 
-    private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Formations classées par compétence, identiques pour tous les utilisateurs
+    private TtlCache<String, CachedFormations> formationCache;
+
+    private final Set<String> refreshingSkills = ConcurrentHashMap.newKeySet();
+
+    // Analyses déjà faites, par empreintes de (offre, CV)
+    private TtlCache<String, SkillAnalysisResult> skillAnalysisCache;
+
+    @PostConstruct
+    public void initCache() {
+        skillAnalysisCache = cacheRegistry.register("skill-analysis", skillAnalysisCacheMaxEntries,
+                Duration.ofMinutes(skillAnalysisCacheTtlMinutes));
+        // L'entrée reste servie (périmée) jusqu'à fresh + max-stale, le temps d'être rafraîchie
+        formationCache = cacheRegistry.register("skill-formations", formationCacheMaxEntries,
+                Duration.ofMinutes(formationCacheFreshMinutes).plusDays(formationCacheMaxStaleDays));
+    }
+
     // AI-powered CV analysis using OpenAI and Google Custom Search
     public CvAnalysisResponse analyzeCv(CvAnalysisRequest request) throws Exception {
         logger.info("===== Début analyse CV avec IA (100% AI-Driven) =====");
 
-        CvAnalysisResponse response = new CvAnalysisResponse();
-
         // Step 1: Use OpenAI for comprehensive skill analysis
         SkillAnalysisResult skillAnalysis = analyzeSkillsWithAI(request.getJobDescription(), request.getCvText());
         logger.info("Analyse IA terminée - Matching: {}%, Manquantes: {}, Possédées: {}",
                 skillAnalysis.matchPercentage, skillAnalysis.missingSkills.size(), skillAnalysis.currentSkills.size());
 
         if (skillAnalysis.missingSkills.isEmpty()) {
-            logger.info("Aucune compétence manquante détectée.");
-            response.setJobDescription(request.getJobDescription());
-            response.setMissingSkills(new ArrayList<>());
-            response.setMatchingSkills(skillAnalysis.matchingSkills);
-            response.setMatchPercentage(100.0);
-            response.setRecommendedFormations(new ArrayList<>());
-            response.setImprovements(new HashMap<>());
-
-            response.setOverallFeedback("Excellent ! Votre profil correspond parfaitement au poste.");
-            return response;
+            return buildPerfectMatchResponse(request, skillAnalysis);
         }
 
-        // Step 2: Search for formations for each missing skill using Google Custom
-        // Search
-        Map<String, Map<String, List<FormationDetail>>> formationsBySkill = new HashMap<>();
-        for (String skill : skillAnalysis.missingSkills) {
-            logger.info("Recherche de formations pour: {}", skill);
-            Map<String, List<FormationDetail>> formations = searchFormationsWithGoogle(skill);
-            formationsBySkill.put(skill, formations);
-        }
+        // Step 2: Search for formations for all missing skills concurrently using
+        // Google Custom Search, bounded by parallelism and an overall deadline
+        FormationSearchOutcome formations = searchFormationsForSkills(skillAnalysis.missingSkills).join();
 
         // Step 3: Build comprehensive response
+        return buildAnalysisResponse(request, skillAnalysis, formations);
+    }
+
+    // Non-blocking variant: OpenAI analysis, then the same bounded formation fan-out
+    public CompletableFuture<CvAnalysisResponse> analyzeCvAsync(CvAnalysisRequest request) {
+        logger.info("===== Début analyse CV avec IA (async) =====");
+
+        return analyzeSkillsWithAIAsync(request.getJobDescription(), request.getCvText())
+                .thenCompose(skillAnalysis -> {
+                    logger.info("Analyse IA terminée - Matching: {}%, Manquantes: {}, Possédées: {}",
+                            skillAnalysis.matchPercentage, skillAnalysis.missingSkills.size(), skillAnalysis.currentSkills.size());
+
+                    if (skillAnalysis.missingSkills.isEmpty()) {
+                        return CompletableFuture.completedFuture(buildPerfectMatchResponse(request, skillAnalysis));
+                    }
+
+                    return searchFormationsForSkills(skillAnalysis.missingSkills)
+                            .thenApply(formations -> buildAnalysisResponse(request, skillAnalysis, formations));
+                });
+    }
+
+    private CvAnalysisResponse buildPerfectMatchResponse(CvAnalysisRequest request, SkillAnalysisResult skillAnalysis) {
+        logger.info("Aucune compétence manquante détectée.");
+
+        CvAnalysisResponse response = new CvAnalysisResponse();
+        response.setJobDescription(request.getJobDescription());
+        response.setMissingSkills(new ArrayList<>());
+        response.setMatchingSkills(skillAnalysis.matchingSkills);
+        response.setMatchPercentage(100.0);
+        response.setRecommendedFormations(new ArrayList<>());
+        response.setImprovements(new HashMap<>());
+
+        response.setOverallFeedback("Excellent ! Votre profil correspond parfaitement au poste.");
+        return response;
+    }
+
+    private CvAnalysisResponse buildAnalysisResponse(CvAnalysisRequest request, SkillAnalysisResult skillAnalysis,
+            FormationSearchOutcome formations) {
         // Convert formations to response format
-        List<FormationRecommendation> recommendations = IASearchUtils.buildFormationRecommendations(formationsBySkill);
+        List<FormationRecommendation> recommendations = IASearchUtils.buildFormationRecommendations(formations.formationsBySkill);
 
         Map<String, String> improvements = IASearchUtils.generateImprovements(request, skillAnalysis.missingSkills);
         String feedback = IASearchUtils.generateOverallFeedback(skillAnalysis.matchPercentage,
                 skillAnalysis.missingSkills.size());
 
+        CvAnalysisResponse response = new CvAnalysisResponse();
         response.setJobDescription(request.getJobDescription());
         response.setMissingSkills(skillAnalysis.missingSkills);
         response.setMatchingSkills(skillAnalysis.matchingSkills);
@@ -92,6 +169,8 @@ public class AIAnalysisService {
         response.setRecommendedFormations(recommendations);
         response.setImprovements(improvements);
         response.setOverallFeedback(feedback);
+        response.setSkillsWithoutFormations(formations.incompleteSkills);
+        response.setFormationsPartial(!formations.incompleteSkills.isEmpty());
 
         logger.info("Analyse terminée avec succès");
         return response;
@@ -101,122 +180,176 @@ public class AIAnalysisService {
     private SkillAnalysisResult analyzeSkillsWithAI(String jobDescription, String cvText) throws Exception {
         logger.info("===== Analyse complète des compétences avec IA =====");
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            String prompt = String.format(
-                    "Voici une offre d'emploi :\n%s\n\n" +
-                            "Voici le profil du candidat :\n%s\n\n" +
-                            "INSTRUCTIONS IMPORTANTES :\n" +
-                            "1. Analyse uniquement les competences techniques essentielles dans l'offre d'emploi.\n" +
-                            "2. Analyse uniquement les competences techniques importantes du candidat.\n" +
-                            "3. Identifie les correspondances importantes (matching).\n" +
-                            "4. Identifie uniquement les competences techniques manquantes REELLEMENT importantes.\n" +
-                            "5. NE PAS suggerer les competences de base si une competence avancee est presente :\n" +
-                            "   - React/Next.js/Angular/Vue.js -> NE PAS HTML, CSS, JavaScript\n" +
-                            "   - Spring Boot -> NE PAS Java\n" +
-                            "   - Django/Flask -> NE PAS Python\n" +
-                            "   - Kubernetes -> NE PAS Docker\n" +
-                            "   - Machine Learning -> NE PAS Python, Data Analysis\n" +
-                            "   - Figma/Adobe XD -> NE PAS UI/UX Design de base\n" +
-                            "   - Google Analytics -> NE PAS Digital Marketing de base\n" +
-                            "   - Financial Modeling -> NE PAS Excel ou Financial Analysis de base\n" +
-                            "6. Limite à maximum 10 competences clés par catégorie si la liste est longue.\n" +
-                            "7. Calcule le pourcentage de matching (competences matching / competences requises * 100).\n\n"
-                            +
-                            "IMPORTANT : Tout ce que tu generes sera utilise directement dans un code Java. " +
-                            "Tu NE DOIS PAS ajouter : accents, guillemets doubles ou simples supplementaires, ou caracteres speciaux/invisibles. "
-                            +
-                            "Respecte strictement le format JSON fourni et utilise uniquement des caracteres ASCII standards.\n\n"
-                            +
-                            "Format JSON valide avec double quotes UNIQUEMENT :\n" +
-                            "{\n" +
-                            "    \"competences_requises\": [\"comp1\", \"comp2\", ...],\n" +
-                            "    \"competences_candidat\": [\"comp1\", \"comp2\", ...],\n" +
-                            "    \"competences_matching\": [\"comp1\", ...],\n" +
-                            "    \"competences_manquantes\": [\"comp2\", ...],\n" +
-                            "    \"pourcentage_matching\": 75.5\n" +
-                            "}\n" +
-                            "NE PAS ajouter de texte avant ou apres le JSON.\n" +
-                            "UTILISE UNE LOGIQUE POUR COUVRIR LES BASES SI COMPETENCE AVANCEE EST PRESENTE.",
-                    jobDescription,
-                    cvText);
-
-            // Build OpenAI request
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "gpt-4o-mini");
-            requestBody.put("messages", Arrays.asList(
-                    Map.of("role", "system", "content",
-                            "Tu es un expert en analyse de compétences professionnelles. Tu analyses les CV et offres d'emploi avec précision."),
-                    Map.of("role", "user", "content", prompt)));
-
-            String jsonRequest = objectMapper.writeValueAsString(requestBody);
-
-            HttpPost httpPost = new HttpPost("https://api.openai.com/v1/chat/completions");
+        String cacheKey = skillAnalysisCacheKey(jobDescription, cvText);
+        SkillAnalysisResult cached = skillAnalysisCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("Analyse des compétences trouvée en cache");
+            return cached.copy();
+        }
+
+        try {
+            HttpPost httpPost = new HttpPost(OPENAI_URL);
             httpPost.setHeader("Content-Type", "application/json");
             httpPost.setHeader("Authorization", "Bearer " + openAiKey);
-            httpPost.setEntity(new StringEntity(jsonRequest));
+            httpPost.setEntity(new StringEntity(buildSkillAnalysisRequestJson(jobDescription, cvText)));
 
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpPost)) {
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(httpResponse.getEntity().getContent(), StandardCharsets.UTF_8));
-                String responseStr = reader.lines().collect(Collectors.joining("\n"));
+            UpstreamResponse httpResponse = upstreamHttpClient.execute(Upstream.OPENAI, httpPost);
+            SkillAnalysisResult result = parseSkillAnalysisResponse(httpResponse);
+            skillAnalysisCache.put(cacheKey, result.copy());
+            return result;
+
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'analyse IA complète, fallback sur méthode simple", e);
+            // Fallback to simple method
+            throw new Exception(e);
+        }
+    }
 
-                logger.info("Réponse OpenAI reçue pour analyse complète");
+    // Non-blocking variant of analyzeSkillsWithAI
+    private CompletableFuture<SkillAnalysisResult> analyzeSkillsWithAIAsync(String jobDescription, String cvText) {
+        logger.info("===== Analyse complète des compétences avec IA (async) =====");
 
-                // Parse OpenAI response
-                JsonNode rootNode = objectMapper.readTree(responseStr);
-                String content = rootNode.path("choices").get(0).path("message").path("content").asText();
+        String cacheKey = skillAnalysisCacheKey(jobDescription, cvText);
+        SkillAnalysisResult cached = skillAnalysisCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("Analyse des compétences trouvée en cache");
+            return CompletableFuture.completedFuture(cached.copy());
+        }
 
-                logger.info("Contenu brut GPT: {}", content);
+        try {
+            SimpleHttpRequest request = SimpleRequestBuilder.post(OPENAI_URL)
+                    .setHeader("Authorization", "Bearer " + openAiKey)
+                    .setBody(buildSkillAnalysisRequestJson(jobDescription, cvText), ContentType.APPLICATION_JSON)
+                    .build();
+
+            return upstreamHttpClient.executeAsync(Upstream.OPENAI, request)
+                    .thenApply(Futures.unchecked(this::parseSkillAnalysisResponse))
+                    .thenApply(result -> {
+                        skillAnalysisCache.put(cacheKey, result.copy());
+                        return result;
+                    });
+        } catch (Exception e) {
+            logger.error("Erreur lors de la préparation de l'analyse IA", e);
+            return CompletableFuture.failedFuture(new Exception(e));
+        }
+    }
 
-                // Clean JSON response
-                content = content.replaceAll("^```json\\s*", "").replaceAll("\\s*```$", "").trim();
-                content = content.replace("'", "\"");
-                
-                // Normaliser les caractères spéciaux générés par l'IA
-                content = IASearchUtils.normalizeAIGeneratedJson(content);
+    // Hashes of the whitespace-normalized job description and CV text, plus the model
+    private String skillAnalysisCacheKey(String jobDescription, String cvText) {
+        return SKILL_ANALYSIS_MODEL + ":" + HashUtils.sha256Hex(normalizeForCacheKey(jobDescription))
+                + ":" + HashUtils.sha256Hex(normalizeForCacheKey(cvText));
+    }
 
-                logger.info("Contenu nettoyé et normalisé: {}", content);
+    private String normalizeForCacheKey(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFC).trim().replaceAll("\\s+", " ");
+    }
 
-                // Parse skill analysis
-                JsonNode analysisNode = objectMapper.readTree(content);
+    private String buildSkillAnalysisRequestJson(String jobDescription, String cvText) throws Exception {
+        String prompt = String.format(
+                "Voici une offre d'emploi :\n%s\n\n" +
+                        "Voici le profil du candidat :\n%s\n\n" +
+                        "INSTRUCTIONS IMPORTANTES :\n" +
+                        "1. Analyse uniquement les competences techniques essentielles dans l'offre d'emploi.\n" +
+                        "2. Analyse uniquement les competences techniques importantes du candidat.\n" +
+                        "3. Identifie les correspondances importantes (matching).\n" +
+                        "4. Identifie uniquement les competences techniques manquantes REELLEMENT importantes.\n" +
+                        "5. NE PAS suggerer les competences de base si une competence avancee est presente :\n" +
+                        "   - React/Next.js/Angular/Vue.js -> NE PAS HTML, CSS, JavaScript\n" +
+                        "   - Spring Boot -> NE PAS Java\n" +
+                        "   - Django/Flask -> NE PAS Python\n" +
+                        "   - Kubernetes -> NE PAS Docker\n" +
+                        "   - Machine Learning -> NE PAS Python, Data Analysis\n" +
+                        "   - Figma/Adobe XD -> NE PAS UI/UX Design de base\n" +
+                        "   - Google Analytics -> NE PAS Digital Marketing de base\n" +
+                        "   - Financial Modeling -> NE PAS Excel ou Financial Analysis de base\n" +
+                        "6. Limite à maximum 10 competences clés par catégorie si la liste est longue.\n" +
+                        "7. Calcule le pourcentage de matching (competences matching / competences requises * 100).\n\n"
+                        +
+                        "IMPORTANT : Tout ce que tu generes sera utilise directement dans un code Java. " +
+                        "Tu NE DOIS PAS ajouter : accents, guillemets doubles ou simples supplementaires, ou caracteres speciaux/invisibles. "
+                        +
+                        "Respecte strictement le format JSON fourni et utilise uniquement des caracteres ASCII standards.\n\n"
+                        +
+                        "Format JSON valide avec double quotes UNIQUEMENT :\n" +
+                        "{\n" +
+                        "    \"competences_requises\": [\"comp1\", \"comp2\", ...],\n" +
+                        "    \"competences_candidat\": [\"comp1\", \"comp2\", ...],\n" +
+                        "    \"competences_matching\": [\"comp1\", ...],\n" +
+                        "    \"competences_manquantes\": [\"comp2\", ...],\n" +
+                        "    \"pourcentage_matching\": 75.5\n" +
+                        "}\n" +
+                        "NE PAS ajouter de texte avant ou apres le JSON.\n" +
+                        "UTILISE UNE LOGIQUE POUR COUVRIR LES BASES SI COMPETENCE AVANCEE EST PRESENTE.",
+                jobDescription,
+                cvText);
+
+        // Build OpenAI request
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", SKILL_ANALYSIS_MODEL);
+        requestBody.put("messages", Arrays.asList(
+                Map.of("role", "system", "content",
+                        "Tu es un expert en analyse de compétences professionnelles. Tu analyses les CV et offres d'emploi avec précision."),
+                Map.of("role", "user", "content", prompt)));
+
+        return objectMapper.writeValueAsString(requestBody);
+    }
 
-                SkillAnalysisResult result = new SkillAnalysisResult();
+    private SkillAnalysisResult parseSkillAnalysisResponse(UpstreamResponse httpResponse) throws Exception {
+        String responseStr = httpResponse.getBody();
 
-                // Extract required skills (avec normalisation)
-                result.requiredSkills = new ArrayList<>();
-                analysisNode.path("competences_requises").forEach(node -> 
-                    result.requiredSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+        logger.info("Réponse OpenAI reçue pour analyse complète");
 
-                // Extract current skills (avec normalisation)
-                result.currentSkills = new ArrayList<>();
-                analysisNode.path("competences_candidat").forEach(node -> 
-                    result.currentSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+        // Parse OpenAI response
+        JsonNode rootNode = objectMapper.readTree(responseStr);
+        String content = rootNode.path("choices").get(0).path("message").path("content").asText();
 
-                // Extract matching skills (avec normalisation)
-                result.matchingSkills = new ArrayList<>();
-                analysisNode.path("competences_matching").forEach(node -> 
-                    result.matchingSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+        logger.info("Contenu brut GPT: {}", content);
 
-                // Extract missing skills (avec normalisation)
-                result.missingSkills = new ArrayList<>();
-                analysisNode.path("competences_manquantes").forEach(node -> 
-                    result.missingSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+        // Clean JSON response
+        content = content.replaceAll("^```json\\s*", "").replaceAll("\\s*```$", "").trim();
+        content = content.replace("'", "\"");
+        
+        // Normaliser les caractères spéciaux générés par l'IA
+        content = IASearchUtils.normalizeAIGeneratedJson(content);
 
-                // Extract match percentage
-                result.matchPercentage = analysisNode.path("pourcentage_matching").asDouble(0.0);
+        logger.info("Contenu nettoyé et normalisé: {}", content);
 
-                logger.info("Analyse complète: {} requises, {} possédées, {} matching, {} manquantes ({}%)",
-                        result.requiredSkills.size(), result.currentSkills.size(),
-                        result.matchingSkills.size(), result.missingSkills.size(), result.matchPercentage);
+        // Parse skill analysis
+        JsonNode analysisNode = objectMapper.readTree(content);
 
-                return result;
-            }
+        SkillAnalysisResult result = new SkillAnalysisResult();
 
-        } catch (Exception e) {
-            logger.error("Erreur lors de l'analyse IA complète, fallback sur méthode simple", e);
-            // Fallback to simple method
-            throw new Exception(e);
-        }
+        // Extract required skills (avec normalisation)
+        result.requiredSkills = new ArrayList<>();
+        analysisNode.path("competences_requises").forEach(node -> 
+            result.requiredSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+
+        // Extract current skills (avec normalisation)
+        result.currentSkills = new ArrayList<>();
+        analysisNode.path("competences_candidat").forEach(node -> 
+            result.currentSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+
+        // Extract matching skills (avec normalisation)
+        result.matchingSkills = new ArrayList<>();
+        analysisNode.path("competences_matching").forEach(node -> 
+            result.matchingSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+
+        // Extract missing skills (avec normalisation)
+        result.missingSkills = new ArrayList<>();
+        analysisNode.path("competences_manquantes").forEach(node -> 
+            result.missingSkills.add(IASearchUtils.normalizeAIGeneratedText(node.asText())));
+
+        // Extract match percentage
+        result.matchPercentage = analysisNode.path("pourcentage_matching").asDouble(0.0);
+
+        logger.info("Analyse complète: {} requises, {} possédées, {} matching, {} manquantes ({}%)",
+                result.requiredSkills.size(), result.currentSkills.size(),
+                result.matchingSkills.size(), result.missingSkills.size(), result.matchPercentage);
+
+        return result;
     }
 
     // Inner class for skill analysis result
@@ -226,86 +359,251 @@ public class AIAnalysisService {
         List<String> matchingSkills;
         List<String> missingSkills;
         double matchPercentage;
+
+        // Cached results are copied in and out so callers never share mutable lists
+        SkillAnalysisResult copy() {
+            SkillAnalysisResult copy = new SkillAnalysisResult();
+            copy.requiredSkills = new ArrayList<>(requiredSkills);
+            copy.currentSkills = new ArrayList<>(currentSkills);
+            copy.matchingSkills = new ArrayList<>(matchingSkills);
+            copy.missingSkills = new ArrayList<>(missingSkills);
+            copy.matchPercentage = matchPercentage;
+            return copy;
+        }
+    }
+
+    // Inner class for the outcome of the formation fan-out
+    private static class FormationSearchOutcome {
+        Map<String, Map<String, List<FormationDetail>>> formationsBySkill = new HashMap<>();
+        List<String> incompleteSkills = new ArrayList<>();
+    }
+
+    // Search formations for every missing skill concurrently: at most formationParallelism
+    // lookups in flight, and whatever has not finished by the deadline is reported as incomplete
+    private CompletableFuture<FormationSearchOutcome> searchFormationsForSkills(List<String> skills) {
+        List<String> uniqueSkills = new ArrayList<>(new LinkedHashSet<>(skills));
+        // Chaque appel Google est borné par la même échéance : rien ne continue après la réponse
+        Deadline deadline = Deadline.after(Duration.ofMillis(formationDeadlineMs));
+
+        Map<String, CompletableFuture<Map<String, List<FormationDetail>>>> slots = new LinkedHashMap<>();
+        for (String skill : uniqueSkills) {
+            slots.put(skill, new CompletableFuture<>());
+        }
+        Queue<String> pending = new ConcurrentLinkedQueue<>(uniqueSkills);
+        Map<String, CompletableFuture<Map<String, List<FormationDetail>>>> inFlight = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < Math.min(formationParallelism, uniqueSkills.size()); i++) {
+            launchNextFormationSearch(pending, slots, inFlight, deadline);
+        }
+
+        return CompletableFuture.allOf(slots.values().toArray(new CompletableFuture[0]))
+                .completeOnTimeout(null, formationDeadlineMs, TimeUnit.MILLISECONDS)
+                .thenApply(done -> {
+                    FormationSearchOutcome outcome = new FormationSearchOutcome();
+                    slots.forEach((skill, slot) -> {
+                        Map<String, List<FormationDetail>> formations = slot.getNow(null);
+                        if (formations != null) {
+                            outcome.formationsBySkill.put(skill, formations);
+                        } else {
+                            outcome.incompleteSkills.add(skill);
+                        }
+                    });
+                    // Ne pas laisser tourner les recherches qui ne seront plus utilisées
+                    pending.clear();
+                    inFlight.values().forEach(lookup -> lookup.cancel(true));
+
+                    if (!outcome.incompleteSkills.isEmpty()) {
+                        logger.warn("Recherche de formations incomplète après {} ms pour: {}",
+                                formationDeadlineMs, outcome.incompleteSkills);
+                    }
+                    return outcome;
+                });
+    }
+
+    private void launchNextFormationSearch(Queue<String> pending,
+            Map<String, CompletableFuture<Map<String, List<FormationDetail>>>> slots,
+            Map<String, CompletableFuture<Map<String, List<FormationDetail>>>> inFlight,
+            Deadline deadline) {
+        if (deadline.isExpired()) {
+            return;
+        }
+        String skill = pending.poll();
+        if (skill == null) {
+            return;
+        }
+
+        logger.info("Recherche de formations pour: {}", skill);
+        CompletableFuture<Map<String, List<FormationDetail>>> lookup = findFormationsForSkill(skill, deadline);
+        inFlight.put(skill, lookup);
+        lookup.whenComplete((formations, error) -> {
+            inFlight.remove(skill);
+            if (error != null) {
+                UpstreamUnavailableException unavailable = UpstreamUnavailableException.findIn(error);
+                if (unavailable != null) {
+                    // Quota, limite de débit ou circuit ouvert : compétence signalée comme incomplète
+                    logger.warn("Recherche de formations non effectuée pour '{}': {}", skill, unavailable.getMessage());
+                } else {
+                    logger.error("Erreur lors de la recherche Google pour '{}'", skill, Futures.unwrap(error));
+                }
+                slots.get(skill).complete(null);
+            } else {
+                slots.get(skill).complete(formations);
+            }
+            launchNextFormationSearch(pending, slots, inFlight, deadline);
+        });
+    }
+
+    // Stale-while-revalidate: a cached skill is answered immediately, and refreshed
+    // in the background once older than fresh-minutes, so analyses never wait on Google for it
+    private CompletableFuture<Map<String, List<FormationDetail>>> findFormationsForSkill(String skill, Deadline deadline) {
+        String cacheKey = formationCacheKey(skill);
+        CachedFormations cached = formationCache.get(cacheKey);
+        if (cached == null) {
+            return fetchAndCacheFormations(skill, cacheKey, deadline);
+        }
+
+        logger.info("Formations trouvées en cache pour: {}", skill);
+        if (System.nanoTime() - cached.fetchedAtNanos > TimeUnit.MINUTES.toNanos(formationCacheFreshMinutes)) {
+            refreshFormationsInBackground(skill, cacheKey);
+        }
+        return CompletableFuture.completedFuture(cached.formations);
+    }
+
+    // Annuler le future retourné annule la recherche Google (et l'échange HTTP) sous-jacente
+    private CompletableFuture<Map<String, List<FormationDetail>>> fetchAndCacheFormations(String skill, String cacheKey,
+            Deadline deadline) {
+        CompletableFuture<Map<String, List<FormationDetail>>> search = searchFormationsWithGoogle(skill, deadline);
+        CompletableFuture<Map<String, List<FormationDetail>>> result = search.thenApply(formations -> {
+            CachedFormations entry = new CachedFormations(formations);
+            formationCache.put(cacheKey, entry);
+            return entry.formations;
+        });
+        cancelWith(result, search);
+        return result;
+    }
+
+    private void refreshFormationsInBackground(String skill, String cacheKey) {
+        // Un seul rafraîchissement à la fois par compétence
+        if (!refreshingSkills.add(cacheKey)) {
+            return;
+        }
+        logger.info("Rafraîchissement en arrière-plan des formations pour: {}", skill);
+        // Hors de toute analyse : le rafraîchissement n'est pas borné par son échéance
+        fetchAndCacheFormations(skill, cacheKey, Deadline.none()).whenComplete((formations, error) -> {
+            refreshingSkills.remove(cacheKey);
+            if (error != null) {
+                logger.warn("Rafraîchissement des formations impossible pour '{}', entrée périmée conservée: {}",
+                        skill, Futures.unwrap(error).getMessage());
+            }
+        });
+    }
+
+    private String formationCacheKey(String skill) {
+        return skill.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Cached formation buckets, shared read-only between responses
+    private static class CachedFormations {
+        final Map<String, List<FormationDetail>> formations;
+        final long fetchedAtNanos = System.nanoTime();
+
+        CachedFormations(Map<String, List<FormationDetail>> formations) {
+            Map<String, List<FormationDetail>> copy = new HashMap<>();
+            formations.forEach((category, list) -> copy.put(category, List.copyOf(list)));
+            this.formations = Collections.unmodifiableMap(copy);
+        }
     }
 
     // Search formations using Google Custom Search API with direct course links
-    private Map<String, List<FormationDetail>> searchFormationsWithGoogle(String skill) {
+    private CompletableFuture<Map<String, List<FormationDetail>>> searchFormationsWithGoogle(String skill, Deadline deadline) {
         logger.info("===== Recherche Google pour: {} =====", skill);
 
+        // Utilisation d'une requête fixe optimisée - seule la compétence change
+        CompletableFuture<UpstreamResponse> search = customSearchClient.searchAsync(stringQueryForGoogleSearch(skill), 3, 1, deadline);
+        CompletableFuture<Map<String, List<FormationDetail>>> result = search
+                .thenApply(Futures.unchecked(httpResponse -> parseFormationResults(skill, httpResponse)));
+        cancelWith(result, search);
+        return result;
+    }
+
+    // Un future dérivé annulé n'annule pas sa source : propager l'annulation explicitement
+    private void cancelWith(CompletableFuture<?> derived, CompletableFuture<?> source) {
+        derived.whenComplete((value, error) -> {
+            if (derived.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+    }
+
+    private Map<String, List<FormationDetail>> emptyFormationResults() {
         Map<String, List<FormationDetail>> results = new HashMap<>();
         results.put("gratuites_sans_certificat", new ArrayList<>());
         results.put("gratuites_avec_certificat", new ArrayList<>());
         results.put("payantes", new ArrayList<>());
+        return results;
+    }
 
-        try {
-            // Utilisation d'une requête fixe optimisée - seule la compétence change
-            String query = stringQueryForGoogleSearch(skill);
-            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-
-            String url = String.format(
-                    "https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s&num=3",
-                    googleApiKey, googleSearchEngineId, encodedQuery);
+    private Map<String, List<FormationDetail>> parseFormationResults(String skill, UpstreamResponse httpResponse) throws Exception {
+        if (!httpResponse.isSuccess()) {
+            throw new Exception("Erreur API Google: " + httpResponse.getStatusCode());
+        }
+        String response = httpResponse.getBody();
 
-            URI uri = new URI(url);
-            String response = restTemplate.getForObject(uri, String.class);
+        Map<String, List<FormationDetail>> results = emptyFormationResults();
 
-            JsonNode rootNode = objectMapper.readTree(response);
-            JsonNode items = rootNode.path("items");
+        JsonNode rootNode = objectMapper.readTree(response);
+        JsonNode items = rootNode.path("items");
 
-            logger.info("Résultats Google reçus pour '{}': {} items", skill, items.size());
+        logger.info("Résultats Google reçus pour '{}': {} items", skill, items.size());
 
-            if (items.isArray()) {
-                for (JsonNode item : items) {
-                    String title = IASearchUtils.normalizeAIGeneratedText(item.path("title").asText(""));
-                    String link = item.path("link").asText("");
-                    String snippet = IASearchUtils.normalizeAIGeneratedText(item.path("snippet").asText(""));
+        if (items.isArray()) {
+            for (JsonNode item : items) {
+                String title = IASearchUtils.normalizeAIGeneratedText(item.path("title").asText(""));
+                String link = item.path("link").asText("");
+                String snippet = IASearchUtils.normalizeAIGeneratedText(item.path("snippet").asText(""));
 
-                    if (link.isEmpty())
-                        continue;
+                if (link.isEmpty())
+                    continue;
 
-                    // Skip non-formation links (blog posts, forums, etc.)
-                    if (!IASearchUtils.isFormationLink(link, title, snippet)) {
-                        logger.debug("Lien ignoré (pas une formation): {}", link);
-                        continue;
-                    }
+                // Skip non-formation links (blog posts, forums, etc.)
+                if (!IASearchUtils.isFormationLink(link, title, snippet)) {
+                    logger.debug("Lien ignoré (pas une formation): {}", link);
+                    continue;
+                }
 
-                    // Extract platform name
-                    String platform = IASearchUtils.normalizeAIGeneratedText(IASearchUtils.extractPlatformName(link, logger));
+                // Extract platform name
+                String platform = IASearchUtils.normalizeAIGeneratedText(IASearchUtils.extractPlatformName(link, logger));
 
-                    // Simple classification - just get category for organization
-                    String category = IASearchUtils.classifyFormation(link);
+                // Simple classification - just get category for organization
+                String category = IASearchUtils.classifyFormation(link);
 
-                    logger.info("Formation trouvée: {} - {} ({})", platform, title, link);
+                logger.info("Formation trouvée: {} - {} ({})", platform, title, link);
 
-                    // Create formation with minimal info - just link matters
-                    FormationDetail formation = new FormationDetail(
-                            title, link, platform, new HashMap<>());
+                // Create formation with minimal info - just link matters
+                FormationDetail formation = new FormationDetail(
+                        title, link, platform, new HashMap<>());
 
-                    results.get(category).add(formation);
+                results.get(category).add(formation);
 
-                    // Limit to 3 per category
-                    if (results.get(category).size() >= 3) {
-                        boolean hasMinimum = results.values().stream()
-                                .allMatch(list -> list.size() >= 1);
-                        if (hasMinimum)
-                            break;
-                    }
+                // Limit to 3 per category
+                if (results.get(category).size() >= 3) {
+                    boolean hasMinimum = results.values().stream()
+                            .allMatch(list -> list.size() >= 1);
+                    if (hasMinimum)
+                        break;
                 }
             }
-
-            logger.info("Formations trouvées - Gratuites sans cert: {}, Gratuites avec cert: {}, Payantes: {}",
-                    results.get("gratuites_sans_certificat").size(),
-                    results.get("gratuites_avec_certificat").size(),
-                    results.get("payantes").size());
-
-        } catch (Exception e) {
-            logger.error("Erreur lors de la recherche Google", e);
         }
 
+        logger.info("Formations trouvées - Gratuites sans cert: {}, Gratuites avec cert: {}, Payantes: {}",
+                results.get("gratuites_sans_certificat").size(),
+                results.get("gratuites_avec_certificat").size(),
+                results.get("payantes").size());
+
         return results;
     }
  
-    private String stringQueryForGoogleSearch(String competence) throws Exception { 
+    private String stringQueryForGoogleSearch(String competence) { 
         return String.format(
             "(intitle:\"formation\" OR intitle:\"cours\" OR intitle:\"tutoriel\" OR intitle:\"certification\" OR intitle:\"programme\" OR intitle:\"bootcamp\") AND (\"%s\") -intitle:\"offre\" (inurl:formation OR inurl:cours OR inurl:tutoriel OR inurl:certification OR inurl:programme OR inurl:bootcamp) -site:\"linkedin.com\"",
             competence
@@ -0,0 +1,234 @@
+package com.example.backend.service;
+
+import com.example.backend.service.GeminiCvExtractionService.CvStructuredData;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.utils.TempCvFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extraction groupée de CV pour les recruteurs : fichiers multiples et/ou archives zip.
+ * Les extractions sont réparties sur un nombre borné de workers ; chaque appel Gemini
+ * reste soumis à la limite de débit, au disjoncteur et au bulkhead du fournisseur.
+ * Chaque résultat est transmis dès qu'il est prêt, un échec ne concerne que son fichier.
+ * Les CV sont copiés dans des fichiers temporaires, jamais gardés en mémoire pendant le lot.
+ */
+@Service
+public class BulkCvExtractionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkCvExtractionService.class);
+
+    @Autowired
+    private GeminiCvExtractionService geminiCvExtractionService;
+
+    @Autowired
+    @Qualifier("bulkExtractionExecutor")
+    private ExecutorService executor;
+
+    @Value("${cv.extraction.bulk.parallelism:4}")
+    private int parallelism;
+
+    @Value("${cv.extraction.bulk.max-files:50}")
+    private int maxFiles;
+
+    // Taille maximale d'un CV, y compris décompressé depuis une archive
+    @Value("${cv.extraction.bulk.max-file-bytes:10485760}")
+    private long maxFileBytes;
+
+    @Value("${cv.extraction.deadline-ms:45000}")
+    private long deadlineMs;
+
+    /**
+     * Résultat de l'extraction d'un fichier : données extraites ou erreur
+     */
+    public static class BulkItemResult {
+        private final int index;
+        private final String fileName;
+        private final CvStructuredData data;
+        private final Throwable error;
+
+        public BulkItemResult(int index, String fileName, CvStructuredData data, Throwable error) {
+            this.index = index;
+            this.fileName = fileName;
+            this.data = data;
+            this.error = error;
+        }
+
+        public int getIndex() { return index; }
+        public String getFileName() { return fileName; }
+        public CvStructuredData getData() { return data; }
+        public Throwable getError() { return error; }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Liste les CV à extraire : les fichiers envoyés, et le contenu des archives zip,
+     * chacun dans un fichier temporaire à libérer avec {@link #release}
+     */
+    public List<TempCvFile> unpack(MultipartFile[] files) throws IOException {
+        List<TempCvFile> cvFiles = new ArrayList<>();
+        try {
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                if (isZip(file.getOriginalFilename(), file.getContentType())) {
+                    unzip(file, cvFiles);
+                } else {
+                    checkSize(file.getOriginalFilename(), file.getSize());
+                    cvFiles.add(TempCvFile.spool(file));
+                }
+                checkCount(cvFiles.size());
+            }
+            return cvFiles;
+        } catch (IOException | RuntimeException e) {
+            release(cvFiles);
+            throw e;
+        }
+    }
+
+    /**
+     * Supprime les fichiers temporaires d'un lot
+     */
+    public void release(List<TempCvFile> cvFiles) {
+        for (TempCvFile cv : cvFiles) {
+            try {
+                cv.close();
+            } catch (IOException e) {
+                logger.debug("Fichier temporaire non supprimé: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Extrait tous les fichiers, au plus parallelism à la fois, et transmet chaque résultat
+     * dans l'ordre d'achèvement. Retourne une fois tous les fichiers lancés traités.
+     * Dès que cancelled passe à vrai (client déconnecté, ou échec de transmission d'un résultat),
+     * plus aucun fichier n'est lancé.
+     */
+    public void extractAll(List<TempCvFile> cvFiles, AtomicBoolean cancelled, Consumer<BulkItemResult> onResult)
+            throws InterruptedException {
+        logger.info("Extraction groupée de {} CV ({} en parallèle)", cvFiles.size(), parallelism);
+        int slots = Math.max(1, parallelism);
+        Semaphore permits = new Semaphore(slots);
+
+        int launched = 0;
+        for (int i = 0; i < cvFiles.size() && !cancelled.get(); i++) {
+            int index = i;
+            TempCvFile cv = cvFiles.get(i);
+            permits.acquire();
+            if (cancelled.get()) {
+                permits.release();
+                break;
+            }
+            launched++;
+            executor.execute(() -> {
+                BulkItemResult result;
+                try {
+                    // Échéance propre à chaque fichier, à partir du début de son extraction
+                    Deadline deadline = Deadline.after(Duration.ofMillis(deadlineMs));
+                    CvStructuredData cvData = geminiCvExtractionService.extractCvData(cv, deadline);
+                    result = new BulkItemResult(index, cv.getOriginalFilename(), cvData, null);
+                } catch (Exception e) {
+                    logger.warn("Extraction groupée: échec pour {}: {}", cv.getOriginalFilename(), e.getMessage());
+                    result = new BulkItemResult(index, cv.getOriginalFilename(), null, e);
+                }
+                try {
+                    if (!cancelled.get()) {
+                        onResult.accept(result);
+                    }
+                } catch (RuntimeException e) {
+                    if (cancelled.compareAndSet(false, true)) {
+                        logger.info("Résultat d'extraction non transmis ({}), extraction groupée interrompue", e.getMessage());
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        // Attendre la fin des extractions en cours
+        permits.acquire(slots);
+        permits.release(slots);
+        if (cancelled.get()) {
+            logger.info("Extraction groupée interrompue après {} fichiers sur {}", launched, cvFiles.size());
+        }
+    }
+
+    private void unzip(MultipartFile archive, List<TempCvFile> cvFiles) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String baseName = name.substring(name.lastIndexOf('/') + 1);
+                // Dossiers, métadonnées macOS et fichiers cachés ignorés
+                if (entry.isDirectory() || name.startsWith("__MACOSX/") || baseName.isEmpty() || baseName.startsWith(".")) {
+                    continue;
+                }
+                cvFiles.add(spoolLimited(zip, baseName));
+                checkCount(cvFiles.size());
+            }
+        }
+    }
+
+    /**
+     * Copie une entrée d'archive sur disque sans dépasser la taille maximale (protection contre les archives piégées)
+     */
+    private TempCvFile spoolLimited(InputStream input, String name) throws IOException {
+        TempCvFile cv = TempCvFile.create(name, URLConnection.guessContentTypeFromName(name));
+        try (OutputStream output = Files.newOutputStream(cv.getPath())) {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                total += read;
+                checkSize(name, total);
+                output.write(buffer, 0, read);
+            }
+            return cv;
+        } catch (IOException | RuntimeException e) {
+            cv.close();
+            throw e;
+        }
+    }
+
+    private boolean isZip(String fileName, String contentType) {
+        return (contentType != null && (contentType.equals("application/zip") || contentType.equals("application/x-zip-compressed")))
+            || (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".zip"));
+    }
+
+    private void checkSize(String name, long size) {
+        if (size > maxFileBytes) {
+            throw new IllegalArgumentException("Fichier trop volumineux: " + name + " (max " + maxFileBytes / (1024 * 1024) + "MB)");
+        }
+    }
+
+    private void checkCount(int count) {
+        if (count > maxFiles) {
+            throw new IllegalArgumentException("Trop de fichiers (max " + maxFiles + ")");
+        }
+    }
+}
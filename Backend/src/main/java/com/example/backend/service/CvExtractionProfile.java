@@ -0,0 +1,40 @@
+package com.example.backend.service;
+
+import java.util.List;
+
+/**
+ * Profils d'extraction de CV : chaque profil ne demande à Gemini que les sections
+ * (et les champs) dont l'appelant a besoin. Les tokens générés dominent la latence
+ * du modèle, un prompt plus étroit répond donc plus vite et coûte moins cher.
+ */
+public enum CvExtractionProfile {
+
+    // Toutes les sections, tous les champs (extraction pour le frontend, analyse de CV)
+    FULL(List.of("personal_info", "experiences", "education", "skills", "languages", "certifications", "projects", "summary")),
+
+    // Ce qu'utilise la recherche d'emploi : identité, postes, formations, compétences et une ligne d'accroche
+    JOB_SEARCH(List.of("personal_info", "experiences", "education", "skills", "summary")),
+
+    // Compétences seules (tri de candidatures par compétences)
+    SKILLS_ONLY(List.of("skills"));
+
+    private final List<String> sections;
+
+    CvExtractionProfile(List<String> sections) {
+        this.sections = sections;
+    }
+
+    /**
+     * Sections de premier niveau demandées, dans l'ordre du prompt
+     */
+    public List<String> getSections() {
+        return sections;
+    }
+
+    /**
+     * Vrai si une extraction de ce profil contient tout ce que demande l'autre profil
+     */
+    public boolean covers(CvExtractionProfile other) {
+        return this == other || this == FULL;
+    }
+}
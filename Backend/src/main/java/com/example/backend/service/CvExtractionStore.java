@@ -0,0 +1,131 @@
+package com.example.backend.service;
+
+import com.example.backend.model.CvExtractionRecord;
+import com.example.backend.repository.CvExtractionRecordRepository;
+import com.example.backend.service.GeminiCvExtractionService.CvStructuredData;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stockage durable (Postgres, jsonb) des extractions Gemini.
+ * Second niveau derrière le cache mémoire : survit aux redémarrages et redéploiements.
+ * Les écritures sont faites en arrière-plan pour ne pas rallonger les requêtes.
+ */
+@Service
+public class CvExtractionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CvExtractionStore.class);
+
+    @Autowired
+    private CvExtractionRecordRepository repository;
+
+    @Value("${cv.extraction.store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cv.extraction.store.retention-days:90}")
+    private long retentionDays;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cv-extraction-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Recherche une extraction persistée, null si absente ou illisible
+     */
+    public CvStructuredData find(String contentHash, String extractionVersion) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Optional<CvExtractionRecord> record = repository.findByContentHashAndExtractionVersion(contentHash, extractionVersion);
+            if (record.isEmpty()) {
+                return null;
+            }
+            Long id = record.get().getId();
+            writer.execute(() -> repository.touch(id, LocalDateTime.now()));
+            return objectMapper.treeToValue(record.get().getDonneesJson(), CvStructuredData.class);
+        } catch (Exception e) {
+            logger.warn("Lecture du stockage des extractions impossible: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Persiste une extraction en arrière-plan (ignorée si déjà présente)
+     */
+    public void saveAsync(String contentHash, String extractionVersion, CvStructuredData cvData) {
+        if (!enabled) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                if (repository.findByContentHashAndExtractionVersion(contentHash, extractionVersion).isPresent()) {
+                    return;
+                }
+                repository.save(new CvExtractionRecord(contentHash, extractionVersion, objectMapper.valueToTree(cvData)));
+                logger.debug("Extraction persistée ({})", contentHash);
+            } catch (DataIntegrityViolationException e) {
+                // Une autre instance a persisté la même extraction entre-temps
+                logger.debug("Extraction déjà persistée ({})", contentHash);
+            } catch (Exception e) {
+                logger.warn("Persistance de l'extraction impossible: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Charge les extractions les plus récemment utilisées, pour préchauffer le cache mémoire
+     *
+     * @return empreinte du fichier -> données extraites, de la plus récente à la plus ancienne
+     */
+    public Map<String, CvStructuredData> loadRecent(String extractionVersion, int limit) {
+        Map<String, CvStructuredData> recent = new LinkedHashMap<>();
+        if (!enabled || limit <= 0) {
+            return recent;
+        }
+        for (CvExtractionRecord record : repository.findByExtractionVersionOrderByDateDernierAccesDesc(
+                extractionVersion, PageRequest.of(0, limit))) {
+            try {
+                recent.put(record.getContentHash(), objectMapper.treeToValue(record.getDonneesJson(), CvStructuredData.class));
+            } catch (Exception e) {
+                logger.warn("Extraction persistée illisible ({}): {}", record.getContentHash(), e.getMessage());
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * Supprime les extractions non utilisées depuis la durée de rétention
+     */
+    public int purgeExpired() {
+        if (!enabled) {
+            return 0;
+        }
+        return repository.deleteNotAccessedSince(LocalDateTime.now().minusDays(retentionDays));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.backend.service;
+
+import com.example.backend.upstream.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Normalisation des CV envoyés en photo ou en scan avant l'appel à Gemini en vision :
+ * redressement selon l'orientation EXIF, réduction à max-dimension pixels, niveaux de gris
+ * et recompression JPEG sans métadonnées (EXIF supprimé).
+ * Le travail tourne sur le pool borné cvImageExecutor ; en cas d'échec, de saturation
+ * ou de dépassement du délai, l'image d'origine est envoyée telle quelle.
+ */
+@Service
+public class CvImageNormalizationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CvImageNormalizationService.class);
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    @Autowired
+    @Qualifier("cvImageExecutor")
+    private ExecutorService executor;
+
+    @Value("${cv.extraction.image.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cv.extraction.image.max-dimension:2000}")
+    private int maxDimension;
+
+    @Value("${cv.extraction.image.grayscale:true}")
+    private boolean grayscale;
+
+    @Value("${cv.extraction.image.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // Au-delà, l'image n'est pas décodée (protection contre les images piégées)
+    @Value("${cv.extraction.image.max-pixels:100000000}")
+    private long maxPixels;
+
+    @Value("${cv.extraction.image.timeout-ms:5000}")
+    private long timeoutMs;
+
+    /**
+     * Image normalisée et son nouveau type MIME
+     */
+    public static class NormalizedImage {
+        private final byte[] content;
+        private final String mimeType;
+
+        public NormalizedImage(byte[] content, String mimeType) {
+            this.content = content;
+            this.mimeType = mimeType;
+        }
+
+        public byte[] getContent() { return content; }
+        public String getMimeType() { return mimeType; }
+    }
+
+    /**
+     * Normalise une image de CV, ou retourne null s'il faut envoyer le fichier d'origine
+     * (pas une image, format non géré, résultat plus lourd, pool saturé, délai dépassé)
+     */
+    public NormalizedImage normalize(MultipartFile file, String mimeType, Deadline deadline) {
+        if (!enabled || mimeType == null || !mimeType.startsWith("image/")) {
+            return null;
+        }
+
+        Future<NormalizedImage> task;
+        try {
+            task = executor.submit(() -> process(file));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Normalisation d'image saturée, {} envoyé tel quel", file.getOriginalFilename());
+            return null;
+        }
+
+        long waitMillis = deadline.isBounded() ? Math.min(timeoutMs, Math.max(1, deadline.remainingMillis())) : timeoutMs;
+        try {
+            return task.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            logger.warn("Normalisation de {} trop longue ({} ms), image envoyée telle quelle", file.getOriginalFilename(), waitMillis);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Normalisation de {} impossible, image envoyée telle quelle: {}",
+                file.getOriginalFilename(), e.getCause().getMessage());
+        }
+        return null;
+    }
+
+    private NormalizedImage process(MultipartFile file) throws IOException {
+        long startNanos = System.nanoTime();
+        byte[] original = file.getBytes();
+        int orientation = readExifOrientation(original);
+
+        BufferedImage image;
+        int width;
+        int height;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                logger.debug("Format d'image non géré: {}", file.getOriginalFilename());
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    logger.warn("Image trop grande pour être normalisée: {}x{}", width, height);
+                    return null;
+                }
+                // Sous-échantillonnage au décodage : une photo de 12 MP n'est jamais décodée en entier
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / Math.max(1, maxDimension));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        boolean rotated = orientation >= 5 && orientation <= 8;
+
+        BufferedImage normalized = new BufferedImage(
+            rotated ? targetHeight : targetWidth,
+            rotated ? targetWidth : targetHeight,
+            grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = normalized.createGraphics();
+        try {
+            // Fond blanc pour les images avec transparence
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, normalized.getWidth(), normalized.getHeight());
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.transform(orientationTransform(orientation, targetWidth, targetHeight));
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        byte[] content = encodeJpeg(normalized);
+        boolean changed = isDownscaled(width, height, normalized) || orientation > 1;
+        if (content.length >= original.length && !changed) {
+            logger.debug("Image {} déjà compacte, envoyée telle quelle", file.getOriginalFilename());
+            return null;
+        }
+        logger.info("Image normalisée: {}x{} -> {}x{}, {} -> {} octets en {} ms",
+            width, height, normalized.getWidth(), normalized.getHeight(), original.length, content.length,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return new NormalizedImage(content, "image/jpeg");
+    }
+
+    private boolean isDownscaled(int width, int height, BufferedImage normalized) {
+        return Math.max(width, height) > Math.max(normalized.getWidth(), normalized.getHeight());
+    }
+
+    /**
+     * JPEG sans métadonnées : l'EXIF (position GPS, appareil...) n'est pas recopié
+     */
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("Encodeur JPEG indisponible");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Transformation qui affiche l'image dans le bon sens (valeurs 1 à 8 de l'orientation EXIF),
+     * pour une image dessinée en width x height
+     */
+    private AffineTransform orientationTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);
+            default -> new AffineTransform();
+        };
+    }
+
+    /**
+     * Orientation EXIF d'un JPEG (tag 0x0112 de l'IFD0), 1 si absente ou illisible.
+     * ImageIO l'ignore : sans elle, une photo prise en portrait serait envoyée couchée.
+     */
+    private int readExifOrientation(byte[] jpeg) {
+        try {
+            if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+                return 1;
+            }
+            int offset = 2;
+            while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xFF) == 0xFF) {
+                int marker = jpeg[offset + 1] & 0xFF;
+                int length = readShort(jpeg, offset + 2, false);
+                // Début des données de l'image : plus de métadonnées après
+                if (marker == 0xDA) {
+                    return 1;
+                }
+                if (marker == 0xE1 && length >= 8 && new String(jpeg, offset + 4, 4, StandardCharsets.US_ASCII).equals("Exif")) {
+                    int tiff = offset + 10;
+                    boolean littleEndian = jpeg[tiff] == 'I';
+                    int ifd = tiff + readInt(jpeg, tiff + 4, littleEndian);
+                    int entries = readShort(jpeg, ifd, littleEndian);
+                    for (int i = 0; i < entries; i++) {
+                        int entry = ifd + 2 + i * 12;
+                        if (readShort(jpeg, entry, littleEndian) == EXIF_ORIENTATION_TAG) {
+                            int orientation = readShort(jpeg, entry + 8, littleEndian);
+                            return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                        }
+                    }
+                    return 1;
+                }
+                offset += 2 + length;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            logger.debug("EXIF illisible: {}", e.getMessage());
+        }
+        return 1;
+    }
+
+    private int readShort(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private int readInt(byte[] data, int offset, boolean littleEndian) {
+        int high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        int low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.TempCvFile;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Découpe les CV PDF longs (CV académiques de 5 à 15 pages) en groupes de pages consécutives,
+ * extraits en parallèle puis fusionnés : la durée suit le groupe le plus lent
+ * et non plus la somme de toutes les pages.
+ * Seuls les PDF envoyés en vision sont découpés : un PDF avec couche texte part en une seule requête texte.
+ */
+@Service
+public class CvPageSplitService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CvPageSplitService.class);
+
+    @Value("${cv.extraction.page-split.enabled:true}")
+    private boolean enabled;
+
+    // En dessous, le CV part en une seule requête
+    @Value("${cv.extraction.page-split.min-pages:5}")
+    private int minPages;
+
+    @Value("${cv.extraction.page-split.pages-per-group:3}")
+    private int pagesPerGroup;
+
+    // Les groupes sont agrandis au besoin pour ne pas dépasser ce nombre de requêtes par CV
+    @Value("${cv.extraction.page-split.max-groups:5}")
+    private int maxGroups;
+
+    /**
+     * Groupes de pages du PDF, dans l'ordre, chacun dans un fichier temporaire à fermer par l'appelant ;
+     * liste vide si le CV doit être extrait d'un seul tenant (trop court, découpage désactivé ou impossible)
+     */
+    public List<TempCvFile> split(PDDocument document, String fileName) {
+        if (!enabled) {
+            return List.of();
+        }
+        int pages = document.getNumberOfPages();
+        if (pages < Math.max(2, minPages)) {
+            return List.of();
+        }
+
+        int groupSize = Math.max(Math.max(1, pagesPerGroup), (pages + maxGroups - 1) / Math.max(1, maxGroups));
+        Splitter splitter = new Splitter();
+        splitter.setSplitAtPage(groupSize);
+
+        String baseName = fileName != null ? fileName : "cv.pdf";
+        List<TempCvFile> groups = new ArrayList<>();
+        try {
+            int firstPage = 1;
+            for (PDDocument group : splitter.split(document)) {
+                try (group) {
+                    int lastPage = firstPage + group.getNumberOfPages() - 1;
+                    TempCvFile groupFile = TempCvFile.create(baseName + " (pages " + firstPage + "-" + lastPage + ")",
+                        CvTextExtractionService.PDF);
+                    groups.add(groupFile);
+                    group.save(groupFile.getPath().toFile());
+                    firstPage = lastPage + 1;
+                }
+            }
+            logger.info("CV de {} pages découpé en {} groupes de {} pages", pages, groups.size(), groupSize);
+            return groups;
+        } catch (Exception e) {
+            logger.warn("Découpage du PDF {} impossible, extraction d'un seul tenant: {}", baseName, e.getMessage());
+            groups.forEach(CvPageSplitService::delete);
+            return List.of();
+        }
+    }
+
+    private static void delete(TempCvFile file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.debug("Fichier temporaire non supprimé: {}", e.getMessage());
+        }
+    }
+}
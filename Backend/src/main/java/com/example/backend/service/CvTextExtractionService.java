@@ -0,0 +1,261 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.TempCvFile;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extraction locale du texte d'un CV avant l'appel à Gemini.
+ * Les CV générés numériquement (PDF avec couche texte, DOCX, texte brut) sont envoyés
+ * au modèle sous forme de texte compact plutôt que de document en base64 ;
+ * les scans et les images restent traités en vision.
+ */
+@Service
+public class CvTextExtractionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CvTextExtractionService.class);
+
+    public static final String PDF = "application/pdf";
+    public static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    public static final String TEXT = "text/plain";
+
+    private static final String DOCX_BODY = "word/document.xml";
+    private static final String WORD_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    @Value("${cv.extraction.text-layer.enabled:true}")
+    private boolean enabled;
+
+    // En dessous, le document est considéré comme un scan (couche texte absente ou partielle)
+    @Value("${cv.extraction.text-layer.min-chars:300}")
+    private int minChars;
+
+    @Value("${cv.extraction.text-layer.min-chars-per-page:100}")
+    private int minCharsPerPage;
+
+    // Part minimale de lettres et chiffres : écarte le texte illisible des polices mal encodées
+    @Value("${cv.extraction.text-layer.min-readable-ratio:0.6}")
+    private double minReadableRatio;
+
+    @Value("${cv.extraction.text-layer.max-pages:20}")
+    private int maxPages;
+
+    // Taille maximale du XML d'un DOCX une fois décompressé (protection contre les archives piégées)
+    @Value("${cv.extraction.text-layer.max-docx-xml-bytes:20971520}")
+    private long maxDocxXmlBytes;
+
+    // Au-delà, un CV en texte brut n'est pas lu en mémoire et part tel quel à Gemini
+    @Value("${cv.extraction.text-layer.max-text-bytes:1048576}")
+    private int maxTextBytes;
+
+    /**
+     * Texte exploitable du CV, ou null si le document doit être envoyé en vision
+     * (image, scan, couche texte insuffisante, extraction désactivée ou en échec)
+     */
+    public String extractText(MultipartFile file, String mimeType) {
+        if (!enabled) {
+            return null;
+        }
+        if (PDF.equals(mimeType)) {
+            try (TempCvFile spooled = TempCvFile.spool(file);
+                 PDDocument document = loadPdf(spooled.getPath())) {
+                return extractText(document, file);
+            } catch (Exception e) {
+                logger.warn("Extraction locale du texte impossible ({}), envoi en vision: {}",
+                    file.getOriginalFilename(), e.getMessage());
+                return null;
+            }
+        }
+        try {
+            String text;
+            int pages;
+            switch (mimeType) {
+                case DOCX -> {
+                    text = extractDocxText(file);
+                    pages = 1;
+                }
+                case TEXT -> {
+                    text = readText(file);
+                    pages = 1;
+                }
+                default -> {
+                    return null;
+                }
+            }
+
+            return usableText(text, pages, file);
+        } catch (Exception e) {
+            logger.warn("Extraction locale du texte impossible ({}), envoi en vision: {}",
+                file.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Comme {@link #extractText(MultipartFile, String)} pour un PDF déjà ouvert par l'appelant,
+     * qui peut ensuite réutiliser le même document (découpage en groupes de pages)
+     */
+    public String extractText(PDDocument document, MultipartFile file) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            return usableText(extractPdfText(document), document.getNumberOfPages(), file);
+        } catch (Exception e) {
+            logger.warn("Extraction locale du texte impossible ({}), envoi en vision: {}",
+                file.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String usableText(String text, int pages, MultipartFile file) {
+        String normalized = normalize(text);
+        if (!isUsable(normalized, pages)) {
+            logger.info("Couche texte inexploitable ({} caractères, {} pages), envoi en vision", normalized.length(), pages);
+            return null;
+        }
+        logger.info("Texte extrait localement: {} caractères au lieu de {} octets de document",
+            normalized.length(), file.getSize());
+        return normalized;
+    }
+
+    /**
+     * Ouvre un PDF depuis le disque : PDFBox lit le fichier à la demande au lieu de le copier en mémoire
+     */
+    public static PDDocument loadPdf(Path path) throws IOException {
+        return Loader.loadPDF(new RandomAccessReadBufferedFile(path.toFile()));
+    }
+
+    /**
+     * Texte brut lu en flux, dans la limite de max-text-bytes
+     */
+    private String readText(MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            byte[] content = input.readNBytes(maxTextBytes + 1);
+            if (content.length > maxTextBytes) {
+                throw new IOException("Fichier texte trop volumineux (plus de " + maxTextBytes + " octets)");
+            }
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    private String extractPdfText(PDDocument document) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setEndPage(Math.max(1, maxPages));
+        return stripper.getText(document);
+    }
+
+    /**
+     * Texte du corps d'un DOCX (word/document.xml) : un paragraphe par ligne, tableaux compris
+     */
+    private String extractDocxText(MultipartFile file) throws IOException, XMLStreamException {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (DOCX_BODY.equals(entry.getName())) {
+                    return parseDocumentXml(new ByteArrayInputStream(readLimited(zip)));
+                }
+            }
+        }
+        throw new IOException("Fichier DOCX sans " + DOCX_BODY);
+    }
+
+    private String parseDocumentXml(InputStream xml) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        StringBuilder text = new StringBuilder();
+        XMLStreamReader reader = factory.createXMLStreamReader(xml);
+        try {
+            boolean inText = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT && WORD_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    switch (reader.getLocalName()) {
+                        case "t" -> inText = true;
+                        case "tab" -> text.append('\t');
+                        case "br", "cr" -> text.append('\n');
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && WORD_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    switch (reader.getLocalName()) {
+                        case "t" -> inText = false;
+                        case "p" -> text.append('\n');
+                        case "tc" -> text.append('\t');
+                        default -> { }
+                    }
+                } else if (inText && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                    text.append(reader.getText());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return text.toString();
+    }
+
+    private byte[] readLimited(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            total += read;
+            if (total > maxDocxXmlBytes) {
+                throw new IOException("Contenu DOCX trop volumineux une fois décompressé");
+            }
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Espaces répétés et lignes vides multiples réduits : le texte envoyé reste compact
+     */
+    private String normalize(String text) {
+        return text
+            .replace("\r\n", "\n")
+            .replace('\r', '\n')
+            .replace('\u00A0', ' ')
+            .replaceAll("[ \\t\\x0B\\f]+", " ")
+            .replaceAll(" *\\n *", "\n")
+            .replaceAll("\\n{3,}", "\n\n")
+            .trim();
+    }
+
+    /**
+     * Assez de texte au total et par page, et majoritairement lisible
+     */
+    private boolean isUsable(String text, int pages) {
+        if (text.length() < minChars) {
+            return false;
+        }
+        int countedPages = Math.max(1, Math.min(pages, Math.max(1, maxPages)));
+        if (text.length() / countedPages < minCharsPerPage) {
+            return false;
+        }
+        long visible = text.codePoints().filter(c -> !Character.isWhitespace(c)).count();
+        long readable = text.codePoints().filter(Character::isLetterOrDigit).count();
+        return visible > 0 && (double) readable / visible >= minReadableRatio;
+    }
+}
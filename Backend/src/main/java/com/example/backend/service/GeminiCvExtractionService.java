@@ -1,27 +1,54 @@
 package com.example.backend.service;
 
+import com.example.backend.cache.CacheRegistry;
+import com.example.backend.cache.TtlCache;
+import com.example.backend.upstream.Base64JsonEntity;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.Futures;
+import com.example.backend.upstream.Upstream;
+import com.example.backend.upstream.UpstreamHttpClient;
+import com.example.backend.upstream.UpstreamResponse;
+import com.example.backend.utils.HashUtils;
 import com.example.backend.utils.IASearchUtils;
+import com.example.backend.utils.CvStructuredDataMerger;
+import com.example.backend.utils.IncrementalJsonSectionParser;
+import com.example.backend.utils.TempCvFile;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * Service pour extraire les informations structurées d'un CV en utilisant Google Gemini Vision API
+ * (les CV avec une couche texte exploitable sont envoyés sous forme de texte, voir CvTextExtractionService)
  * Supporte: PDF, Images (JPG, PNG), TXT, DOCX
  */
 @Service
@@ -29,10 +56,58 @@ public class GeminiCvExtractionService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeminiCvExtractionService.class);
 
+    private static final String GEMINI_MODEL = "gemini-2.5-flash";
+
+    // Remplacé par le document encodé en base64 lors de l'envoi de la requête
+    private static final String INLINE_DATA_MARKER = "__CV_INLINE_DATA__";
+
+    // Sections de premier niveau du JSON demandé à Gemini, dans l'ordre du prompt
+    private static final List<String> CV_SECTIONS = CvExtractionProfile.FULL.getSections();
+
     @Value("${google.gemini.api.key}")
     private String geminiApiKey;
 
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    @Value("${cv.extraction.cache.max-entries:500}")
+    private int cacheMaxEntries;
+
+    @Value("${cv.extraction.cache.ttl-minutes:1440}")
+    private long cacheTtlMinutes;
+
+    @Value("${cv.extraction.store.warmup-size:200}")
+    private int warmupSize;
+
+    @Autowired
+    private CvExtractionStore extractionStore;
+
+    @Autowired
+    private CvTextExtractionService cvTextExtractionService;
+
+    @Autowired
+    private CvImageNormalizationService cvImageNormalizationService;
+
+    @Autowired
+    private CvPageSplitService cvPageSplitService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private TtlCache<String, CvStructuredData> extractionCache;
+    private final Map<CvExtractionProfile, String> extractionVersions = new EnumMap<>(CvExtractionProfile.class);
+
+    @PostConstruct
+    public void initCache() {
+        extractionCache = cacheRegistry.register("cv-extraction", cacheMaxEntries, Duration.ofMinutes(cacheTtlMinutes));
+        // Une version par profil : chaque prompt a ses propres entrées en cache et en base
+        for (CvExtractionProfile profile : CvExtractionProfile.values()) {
+            extractionVersions.put(profile,
+                GEMINI_MODEL + "-" + HashUtils.sha256Hex(buildExtractionPrompt(profile)).substring(0, 12));
+        }
+    }
     
     /**
      * Extrait les informations structurées d'un CV en utilisant Gemini Vision
@@ -41,207 +116,883 @@ public class GeminiCvExtractionService {
      * @return CvStructuredData contenant toutes les informations extraites
      */
     public CvStructuredData extractCvData(MultipartFile file) throws Exception {
-        logger.info("===== Début extraction CV avec Gemini Vision =====");
+        return extractCvData(file, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #extractCvData(MultipartFile)}, dans la limite de l'échéance de la requête
+     */
+    public CvStructuredData extractCvData(MultipartFile file, Deadline deadline) throws Exception {
+        return extractCvData(file, CvExtractionProfile.FULL, deadline);
+    }
+
+    /**
+     * Comme {@link #extractCvData(MultipartFile, Deadline)}, en ne demandant à Gemini
+     * que les sections du profil ; les autres sections restent vides
+     */
+    public CvStructuredData extractCvData(MultipartFile file, CvExtractionProfile profile, Deadline deadline) throws Exception {
+        logger.info("===== Début extraction CV avec Gemini Vision ({}) =====", profile);
         logger.info("Fichier: {}, Type: {}, Taille: {} bytes", 
             file.getOriginalFilename(), file.getContentType(), file.getSize());
 
-        // Convertir le fichier en base64
-        String base64Content = Base64.getEncoder().encodeToString(file.getBytes());
+        String contentHash = contentHash(file);
+        CvStructuredData cached = findCachedExtraction(contentHash, profile);
+        if (cached != null) {
+            return cached;
+        }
+
+        String mimeType = determineMimeType(file);
+        logger.info("MIME type: {}", mimeType);
+
+        // Appeler Gemini : texte extrait localement, ou fichier encodé en base64 au fil de l'envoi ;
+        // un PDF long sans couche texte est découpé en groupes de pages extraits en parallèle
+        CvStructuredData cvData;
+        try (PreparedCv prepared = prepareDocument(file, mimeType, true)) {
+            cvData = prepared.hasPageGroups()
+                ? extractPageGroups(prepared.getPageGroups(), profile, deadline)
+                : callGeminiApi(file, mimeType, prepared.getText(), profile, deadline);
+        }
+
+        logExtractionSummary(cvData);
+        cacheExtraction(contentHash, profile, cvData);
+
+        return cvData;
+    }
+
+    /**
+     * Variante non bloquante de {@link #extractCvData(MultipartFile)}.
+     * Le fichier est lu immédiatement ; l'appel Gemini passe par le client asynchrone.
+     */
+    public CompletableFuture<CvStructuredData> extractCvDataAsync(MultipartFile file) {
+        return extractCvDataAsync(file, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #extractCvDataAsync(MultipartFile)}, dans la limite de l'échéance de la requête
+     */
+    public CompletableFuture<CvStructuredData> extractCvDataAsync(MultipartFile file, Deadline deadline) {
+        return extractCvDataAsync(file, CvExtractionProfile.FULL, deadline);
+    }
+
+    /**
+     * Comme {@link #extractCvDataAsync(MultipartFile, Deadline)}, limité aux sections du profil
+     */
+    public CompletableFuture<CvStructuredData> extractCvDataAsync(MultipartFile file, CvExtractionProfile profile, Deadline deadline) {
+        logger.info("===== Début extraction CV avec Gemini Vision (async, {}) =====", profile);
+        logger.info("Fichier: {}, Type: {}, Taille: {} bytes",
+            file.getOriginalFilename(), file.getContentType(), file.getSize());
+
+        try {
+            String contentHash = contentHash(file);
+            CvStructuredData cached = findCachedExtraction(contentHash, profile);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            String mimeType = determineMimeType(file);
+            CompletableFuture<CvStructuredData> extraction;
+            // Les corps des requêtes asynchrones sont construits avant le retour : les groupes peuvent être supprimés
+            try (PreparedCv prepared = prepareDocument(file, mimeType, true)) {
+                extraction = prepared.hasPageGroups()
+                    ? extractPageGroupsAsync(prepared.getPageGroups(), profile, deadline)
+                    : requestExtractionAsync(file, mimeType, prepared.getText(), profile, deadline);
+            }
+
+            return extraction
+                .thenApply(cvData -> {
+                    logExtractionSummary(cvData);
+                    cacheExtraction(contentHash, profile, cvData);
+                    return cvData;
+                });
+        } catch (Exception e) {
+            logger.error("Erreur lors de la préparation de la requête Gemini", e);
+            return CompletableFuture.failedFuture(new Exception("Erreur extraction CV avec Gemini: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Un appel Gemini sur le client asynchrone, sans cache. Annuler le future retourné annule l'échange.
+     */
+    private CompletableFuture<CvStructuredData> requestExtractionAsync(MultipartFile file, String mimeType, String cvText,
+                                                                       CvExtractionProfile profile, Deadline deadline) {
+        try {
+            // Le client asynchrone exige un corps en mémoire : une seule copie, déjà encodée et à la taille exacte
+            HttpEntity entity = buildGeminiRequestEntity(file, mimeType, cvText, buildExtractionPrompt(profile), deadline);
+            byte[] jsonRequest = entity instanceof Base64JsonEntity documentEntity
+                ? documentEntity.toByteArray()
+                : EntityUtils.toByteArray(entity);
+
+            SimpleHttpRequest request = SimpleRequestBuilder.post(geminiApiUrl())
+                .setBody(jsonRequest, ContentType.APPLICATION_JSON)
+                .build();
+
+            CompletableFuture<UpstreamResponse> exchange = upstreamHttpClient.executeAsync(Upstream.GEMINI, request, deadline);
+            CompletableFuture<CvStructuredData> result = exchange.thenApply(Futures.unchecked(this::parseGeminiResponse));
+            result.whenComplete((cvData, error) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(false);
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            logger.error("Erreur lors de la préparation de la requête Gemini", e);
+            return CompletableFuture.failedFuture(new Exception("Erreur extraction CV avec Gemini: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Extrait les groupes de pages d'un CV en parallèle et attend le plus lent
+     */
+    private CvStructuredData extractPageGroups(List<TempCvFile> pageGroups, CvExtractionProfile profile,
+                                               Deadline deadline) throws Exception {
+        try {
+            return extractPageGroupsAsync(pageGroups, profile, deadline).get();
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            logger.error("Erreur lors de l'extraction par groupes de pages", cause);
+            throw new Exception("Erreur extraction CV avec Gemini: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Une requête Gemini par groupe de pages, toutes envoyées en même temps, puis fusion
+     * des résultats dans l'ordre des pages. L'échec d'un groupe fait échouer l'extraction
+     * et annule les groupes encore en cours.
+     */
+    private CompletableFuture<CvStructuredData> extractPageGroupsAsync(List<TempCvFile> pageGroups,
+                                                                       CvExtractionProfile profile, Deadline deadline) {
+        logger.info("Extraction de {} groupes de pages en parallèle", pageGroups.size());
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<CvStructuredData>> parts = new ArrayList<>();
+        for (TempCvFile group : pageGroups) {
+            parts.add(requestExtractionAsync(group, CvTextExtractionService.PDF, null, profile, deadline));
+        }
+
+        CompletableFuture<CvStructuredData> merged = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(parts.size());
+        for (CompletableFuture<CvStructuredData> part : parts) {
+            part.whenComplete((cvData, error) -> {
+                if (error != null) {
+                    if (merged.completeExceptionally(Futures.unwrap(error))) {
+                        parts.forEach(other -> other.cancel(false));
+                    }
+                } else if (remaining.decrementAndGet() == 0) {
+                    try {
+                        merged.complete(CvStructuredDataMerger.merge(parts.stream().map(CompletableFuture::join).toList()));
+                        logger.info("Groupes de pages extraits et fusionnés en {} ms",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    } catch (RuntimeException e) {
+                        merged.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+        merged.whenComplete((cvData, error) -> {
+            if (merged.isCancelled()) {
+                parts.forEach(part -> part.cancel(false));
+            }
+        });
+        return merged;
+    }
+
+    /**
+     * Mode fusionné de la recherche d'emploi : une seule requête Gemini retourne à la fois
+     * le profil (sections du profil JOB_SEARCH) et la requête Google optimisée, au lieu
+     * d'une extraction Gemini suivie d'un appel OpenAI.
+     * Si l'extraction est déjà en cache, ou si le CV est découpé en groupes de pages,
+     * seule l'extraction est faite et la requête reste à générer (getSearchQuery() est null).
+     */
+    public CvExtractionWithQuery extractCvDataWithQuery(MultipartFile file, String location, Boolean includeRemote,
+                                                        Deadline deadline) throws Exception {
+        logger.info("===== Début extraction CV et requête Google avec Gemini =====");
+        logger.info("Fichier: {}, Type: {}, Taille: {} bytes",
+            file.getOriginalFilename(), file.getContentType(), file.getSize());
+
+        String contentHash = contentHash(file);
+        CvStructuredData cached = findCachedExtraction(contentHash, CvExtractionProfile.JOB_SEARCH);
+        if (cached != null) {
+            return new CvExtractionWithQuery(cached, null);
+        }
+
         String mimeType = determineMimeType(file);
+        CvExtractionWithQuery result;
+        try (PreparedCv prepared = prepareDocument(file, mimeType, true)) {
+            if (prepared.hasPageGroups()) {
+                result = new CvExtractionWithQuery(
+                    extractPageGroups(prepared.getPageGroups(), CvExtractionProfile.JOB_SEARCH, deadline), null);
+            } else {
+                try {
+                    HttpPost httpPost = new HttpPost(geminiApiUrl());
+                    httpPost.setEntity(buildGeminiRequestEntity(file, mimeType, prepared.getText(),
+                        buildQueryExtractionPrompt(location, includeRemote), deadline));
+
+                    logger.info("Envoi de la requête à Gemini Vision API (profil + requête)...");
+                    result = parseExtractionWithQuery(upstreamHttpClient.execute(Upstream.GEMINI, httpPost, deadline));
+                } catch (Exception e) {
+                    logger.error("Erreur lors de l'extraction avec Gemini", e);
+                    throw new Exception("Erreur extraction CV avec Gemini: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        logExtractionSummary(result.getCvData());
+        cacheExtraction(contentHash, CvExtractionProfile.JOB_SEARCH, result.getCvData());
+        return result;
+    }
 
-        logger.info("Fichier encodé en base64, MIME type: {}", mimeType);
+    /**
+     * Variante non bloquante de {@link #extractCvDataWithQuery}
+     */
+    public CompletableFuture<CvExtractionWithQuery> extractCvDataWithQueryAsync(MultipartFile file, String location,
+                                                                               Boolean includeRemote, Deadline deadline) {
+        logger.info("===== Début extraction CV et requête Google avec Gemini (async) =====");
+        logger.info("Fichier: {}, Type: {}, Taille: {} bytes",
+            file.getOriginalFilename(), file.getContentType(), file.getSize());
 
-        // Appeler Gemini Vision API
-        CvStructuredData cvData = callGeminiVisionApi(base64Content, mimeType);
+        try {
+            String contentHash = contentHash(file);
+            CvStructuredData cached = findCachedExtraction(contentHash, CvExtractionProfile.JOB_SEARCH);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(new CvExtractionWithQuery(cached, null));
+            }
+
+            String mimeType = determineMimeType(file);
+            CompletableFuture<CvExtractionWithQuery> extraction;
+            String cvText;
+            try (PreparedCv prepared = prepareDocument(file, mimeType, true)) {
+                cvText = prepared.getText();
+                extraction = prepared.hasPageGroups()
+                    ? extractPageGroupsAsync(prepared.getPageGroups(), CvExtractionProfile.JOB_SEARCH, deadline)
+                        .thenApply(cvData -> new CvExtractionWithQuery(cvData, null))
+                    : null;
+            }
+            if (extraction == null) {
+                HttpEntity entity = buildGeminiRequestEntity(file, mimeType, cvText,
+                    buildQueryExtractionPrompt(location, includeRemote), deadline);
+                byte[] jsonRequest = entity instanceof Base64JsonEntity documentEntity
+                    ? documentEntity.toByteArray()
+                    : EntityUtils.toByteArray(entity);
+                SimpleHttpRequest request = SimpleRequestBuilder.post(geminiApiUrl())
+                    .setBody(jsonRequest, ContentType.APPLICATION_JSON)
+                    .build();
+
+                CompletableFuture<UpstreamResponse> exchange = upstreamHttpClient.executeAsync(Upstream.GEMINI, request, deadline);
+                CompletableFuture<CvExtractionWithQuery> parsed = exchange.thenApply(Futures.unchecked(this::parseExtractionWithQuery));
+                parsed.whenComplete((result, error) -> {
+                    if (parsed.isCancelled()) {
+                        exchange.cancel(false);
+                    }
+                });
+                extraction = parsed;
+            }
 
+            return extraction
+                .thenApply(result -> {
+                    logExtractionSummary(result.getCvData());
+                    cacheExtraction(contentHash, CvExtractionProfile.JOB_SEARCH, result.getCvData());
+                    return result;
+                });
+        } catch (Exception e) {
+            logger.error("Erreur lors de la préparation de la requête Gemini", e);
+            return CompletableFuture.failedFuture(new Exception("Erreur extraction CV avec Gemini: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Profil et requête Google lus dans une même réponse Gemini ; requête null si absente
+     */
+    private CvExtractionWithQuery parseExtractionWithQuery(UpstreamResponse httpResponse) throws Exception {
+        JsonNode rootNode = readGeminiJson(geminiResponseText(httpResponse));
+        String query = rootNode.path("search_query").asText("").trim();
+        if (query.length() > 1 && query.startsWith("\"") && query.endsWith("\"")) {
+            query = query.substring(1, query.length() - 1);
+        }
+        if (query.isEmpty()) {
+            logger.warn("Réponse Gemini sans search_query, la requête sera générée séparément");
+        } else {
+            logger.info("Requête générée par Gemini: {}", query);
+        }
+        return new CvExtractionWithQuery(toCvData(rootNode), query.isEmpty() ? null : query);
+    }
+
+    /**
+     * Extraction en streaming (streamGenerateContent) : chaque section du JSON (personal_info,
+     * experiences, skills...) est transmise à onSection dès qu'elle est syntaxiquement complète,
+     * sans attendre la fin de la réponse. Le résultat final est identique à {@link #extractCvData}
+     * et partage son cache ; en cas de cache, toutes les sections sont transmises immédiatement.
+     */
+    public CvStructuredData extractCvDataStreaming(MultipartFile file, Deadline deadline,
+                                                   BiConsumer<String, Object> onSection) throws Exception {
+        return extractCvDataStreaming(file, CvExtractionProfile.FULL, deadline, onSection);
+    }
+
+    /**
+     * Comme {@link #extractCvDataStreaming(MultipartFile, Deadline, BiConsumer)} : seules
+     * les sections du profil sont demandées et transmises à onSection
+     */
+    public CvStructuredData extractCvDataStreaming(MultipartFile file, CvExtractionProfile profile, Deadline deadline,
+                                                   BiConsumer<String, Object> onSection) throws Exception {
+        logger.info("===== Début extraction CV avec Gemini Vision (streaming, {}) =====", profile);
+        logger.info("Fichier: {}, Type: {}, Taille: {} bytes",
+            file.getOriginalFilename(), file.getContentType(), file.getSize());
+
+        String contentHash = contentHash(file);
+        CvStructuredData cached = findCachedExtraction(contentHash, profile);
+        if (cached != null) {
+            profile.getSections().forEach(section -> onSection.accept(section, sectionValue(cached, section)));
+            return cached;
+        }
+
+        HttpPost httpPost = new HttpPost(geminiStreamApiUrl());
+        String mimeType = determineMimeType(file);
+        try (PreparedCv prepared = prepareDocument(file, mimeType, false)) {
+            httpPost.setEntity(buildGeminiRequestEntity(file, mimeType, prepared.getText(), buildExtractionPrompt(profile), deadline));
+        }
+
+        IncrementalJsonSectionParser parser = new IncrementalJsonSectionParser();
+        CvStructuredData partial = new CvStructuredData();
+        Set<String> emitted = new HashSet<>();
+
+        logger.info("Envoi de la requête à Gemini Vision API (streaming)...");
+        UpstreamResponse httpResponse;
+        try {
+            httpResponse = upstreamHttpClient.executeStreaming(Upstream.GEMINI, httpPost, deadline, line -> {
+                String chunk = streamedText(line);
+                for (IncrementalJsonSectionParser.Section section : parser.feed(chunk)) {
+                    emitSection(partial, section, profile, emitted, onSection);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Échec d'écriture côté appelant (client déconnecté) : transmis tel quel
+            throw e;
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'extraction avec Gemini (streaming)", e);
+            throw new Exception("Erreur extraction CV avec Gemini: " + e.getMessage(), e);
+        }
+
+        if (httpResponse.getStatusCode() != 200) {
+            logger.error("Erreur API Gemini: {}", httpResponse.getBody());
+            throw new Exception("Erreur API Gemini: " + httpResponse.getStatusCode());
+        }
+
+        // Parsing complet du texte reçu : même résultat qu'en mode non streaming
+        CvStructuredData cvData = parseJsonToCvData(parser.getText());
+        logExtractionSummary(cvData);
+        // Mise en cache avant l'envoi des dernières sections : l'extraction reste acquise si le client est parti
+        cacheExtraction(contentHash, profile, cvData);
+        for (String section : profile.getSections()) {
+            if (!emitted.contains(section)) {
+                onSection.accept(section, sectionValue(cvData, section));
+            }
+        }
+        return cvData;
+    }
+
+    /**
+     * Texte généré contenu dans un événement SSE de streamGenerateContent ("data: {...}"), vide sinon
+     */
+    private String streamedText(String line) throws IOException {
+        if (!line.startsWith("data:")) {
+            return "";
+        }
+        JsonNode event = objectMapper.readTree(line.substring(5).trim());
+        StringBuilder text = new StringBuilder();
+        event.path("candidates").path(0).path("content").path("parts")
+            .forEach(part -> text.append(part.path("text").asText("")));
+        return text.toString();
+    }
+
+    /**
+     * Parse une section complète et la transmet ; une section illisible sera reprise
+     * par le parsing complet en fin de flux
+     */
+    private void emitSection(CvStructuredData partial, IncrementalJsonSectionParser.Section section,
+                             CvExtractionProfile profile, Set<String> emitted, BiConsumer<String, Object> onSection) {
+        if (!profile.getSections().contains(section.getName())) {
+            return;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(IASearchUtils.normalizeAIGeneratedJson(section.getJson()));
+            applySection(partial, section.getName(), node);
+        } catch (Exception e) {
+            logger.debug("Section {} non lisible en streaming: {}", section.getName(), e.getMessage());
+            return;
+        }
+        // Hors du try : un échec d'écriture (client déconnecté) doit interrompre la lecture du flux
+        onSection.accept(section.getName(), sectionValue(partial, section.getName()));
+        emitted.add(section.getName());
+    }
+
+    /**
+     * Forme sous laquelle le CV part à Gemini : texte extrait localement, groupes de pages
+     * en vision (fichiers temporaires supprimés par close), ou document entier en vision
+     */
+    private static class PreparedCv implements AutoCloseable {
+        private final String text;
+        private final List<TempCvFile> pageGroups;
+
+        PreparedCv(String text, List<TempCvFile> pageGroups) {
+            this.text = text;
+            this.pageGroups = pageGroups;
+        }
+
+        String getText() { return text; }
+        List<TempCvFile> getPageGroups() { return pageGroups; }
+        boolean hasPageGroups() { return !pageGroups.isEmpty(); }
+
+        @Override
+        public void close() {
+            for (TempCvFile group : pageGroups) {
+                try {
+                    group.close();
+                } catch (IOException e) {
+                    logger.debug("Fichier temporaire non supprimé: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Prépare l'envoi du CV en un seul passage : un PDF est copié sur disque et ouvert une fois,
+     * sa couche texte est vérifiée d'abord, et il n'est découpé en groupes de pages
+     * (si splitPages) que lorsqu'il doit partir en vision
+     */
+    private PreparedCv prepareDocument(MultipartFile file, String mimeType, boolean splitPages) {
+        if (!CvTextExtractionService.PDF.equals(mimeType)) {
+            return new PreparedCv(cvTextExtractionService.extractText(file, mimeType), List.of());
+        }
+        try (TempCvFile spooled = TempCvFile.spool(file);
+             PDDocument document = CvTextExtractionService.loadPdf(spooled.getPath())) {
+            String text = cvTextExtractionService.extractText(document, file);
+            if (text != null || !splitPages) {
+                return new PreparedCv(text, List.of());
+            }
+            return new PreparedCv(null, cvPageSplitService.split(document, file.getOriginalFilename()));
+        } catch (Exception e) {
+            logger.warn("PDF {} illisible localement, envoi en vision d'un seul tenant: {}",
+                file.getOriginalFilename(), e.getMessage());
+            return new PreparedCv(null, List.of());
+        }
+    }
+
+    /**
+     * SHA-256 du fichier, lu en flux
+     */
+    private String contentHash(MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            return HashUtils.sha256Hex(input);
+        }
+    }
+
+    /**
+     * Cherche une extraction déjà faite : cache mémoire, puis stockage Postgres.
+     * La clé est adressée par contenu : SHA-256 du fichier + version du modèle et du prompt,
+     * donc modifier le prompt ou le modèle invalide naturellement les anciennes entrées.
+     * Une extraction complète (FULL) répond aussi aux profils plus étroits.
+     */
+    private CvStructuredData findCachedExtraction(String contentHash, CvExtractionProfile profile) {
+        for (CvExtractionProfile candidate : cacheCandidates(profile)) {
+            String version = extractionVersions.get(candidate);
+            String cacheKey = contentHash + ":" + version;
+            CvStructuredData cached = extractionCache.get(cacheKey);
+            if (cached != null) {
+                logger.info("Extraction {} trouvée en cache mémoire ({})", candidate, contentHash);
+                return cached;
+            }
+
+            cached = extractionStore.find(contentHash, version);
+            if (cached != null) {
+                logger.info("Extraction {} trouvée en base ({})", candidate, contentHash);
+                extractionCache.put(cacheKey, cached);
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Profils dont une extraction en cache convient au profil demandé, le plus proche d'abord
+     */
+    private List<CvExtractionProfile> cacheCandidates(CvExtractionProfile profile) {
+        List<CvExtractionProfile> candidates = new ArrayList<>();
+        candidates.add(profile);
+        for (CvExtractionProfile other : CvExtractionProfile.values()) {
+            if (other != profile && other.covers(profile)) {
+                candidates.add(other);
+            }
+        }
+        return candidates;
+    }
+
+    private void cacheExtraction(String contentHash, CvExtractionProfile profile, CvStructuredData cvData) {
+        String version = extractionVersions.get(profile);
+        extractionCache.put(contentHash + ":" + version, cvData);
+        extractionStore.saveAsync(contentHash, version, cvData);
+    }
+
+    /**
+     * Au démarrage, recharge en mémoire les extractions persistées les plus récentes
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmExtractionCache() {
+        try {
+            int purged = extractionStore.purgeExpired();
+            int loaded = 0;
+            for (String version : extractionVersions.values()) {
+                Map<String, CvStructuredData> recent = extractionStore.loadRecent(version, Math.min(warmupSize, cacheMaxEntries));
+                // Insérer de la plus ancienne à la plus récente pour conserver l'ordre LRU
+                List<Map.Entry<String, CvStructuredData>> entries = new ArrayList<>(recent.entrySet());
+                Collections.reverse(entries);
+                entries.forEach(entry -> extractionCache.put(entry.getKey() + ":" + version, entry.getValue()));
+                loaded += recent.size();
+            }
+            logger.info("Cache des extractions préchauffé: {} entrées ({} expirées purgées)", loaded, purged);
+        } catch (Exception e) {
+            logger.warn("Préchauffage du cache des extractions impossible: {}", e.getMessage());
+        }
+    }
+
+    private void logExtractionSummary(CvStructuredData cvData) {
         logger.info("Extraction terminée avec succès - Nom: {}, Expériences: {}, Formations: {}, Compétences: {}",
             cvData.getPersonalInfo().getName(),
             cvData.getExperiences().size(),
             cvData.getEducation().size(),
             cvData.getSkills().size());
-
-        return cvData;
     }
 
     /**
-     * Appelle l'API Gemini Vision pour extraire les données du CV
+     * Appelle l'API Gemini pour extraire les données du CV (texte ou vision)
      */
-    private CvStructuredData callGeminiVisionApi(String base64Content, String mimeType) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            
-            // Construire le prompt pour Gemini
-            String prompt = buildExtractionPrompt();
-
-            // Construire le corps de la requête Gemini
-            Map<String, Object> requestBody = new HashMap<>();
-            
-            // Contents
-            List<Map<String, Object>> contents = new ArrayList<>();
-            Map<String, Object> content = new HashMap<>();
-            
-            // Parts (text + image)
-            List<Map<String, Object>> parts = new ArrayList<>();
-            
-            // Part 1: Le prompt texte
-            Map<String, Object> textPart = new HashMap<>();
-            textPart.put("text", prompt);
-            parts.add(textPart);
-            
-            // Part 2: L'image/document en base64
-            Map<String, Object> imagePart = new HashMap<>();
-            Map<String, Object> inlineData = new HashMap<>();
-            inlineData.put("mime_type", mimeType);
-            inlineData.put("data", base64Content);
-            imagePart.put("inline_data", inlineData);
-            parts.add(imagePart);
-            
-            content.put("parts", parts);
-            contents.add(content);
-            
-            requestBody.put("contents", contents);
-            
-            // Configuration de génération pour obtenir du JSON
-            Map<String, Object> generationConfig = new HashMap<>();
-            generationConfig.put("temperature", 0.1);
-            // Note: response_mime_type n'est pas supporté par toutes les versions de l'API
-            // On s'appuie sur les instructions du prompt pour obtenir du JSON
-            requestBody.put("generationConfig", generationConfig);
-
-            String jsonRequest = objectMapper.writeValueAsString(requestBody);
-            
-            // URL de l'API Gemini 1.5 Flash (utilise v1beta pour les modèles récents)
-            String apiUrl = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.5-flash:generateContent?key=" + geminiApiKey;
-            
-            HttpPost httpPost = new HttpPost(apiUrl);
-            httpPost.setHeader("Content-Type", "application/json");
-            httpPost.setEntity(new StringEntity(jsonRequest, StandardCharsets.UTF_8));
+    private CvStructuredData callGeminiApi(MultipartFile file, String mimeType, String cvText, CvExtractionProfile profile,
+                                           Deadline deadline) throws Exception {
+        try {
+            HttpPost httpPost = new HttpPost(geminiApiUrl());
+            httpPost.setEntity(buildGeminiRequestEntity(file, mimeType, cvText, buildExtractionPrompt(profile), deadline));
 
             logger.info("Envoi de la requête à Gemini Vision API...");
 
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpPost)) {
-                int statusCode = httpResponse.getCode();
-                
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(httpResponse.getEntity().getContent(), StandardCharsets.UTF_8));
-                String responseStr = reader.lines().collect(Collectors.joining("\n"));
-
-                logger.info("Réponse Gemini reçue (status: {})", statusCode);
-                    
-                if (statusCode != 200) {
-                    logger.error("Erreur API Gemini: {}", responseStr);
-                    throw new Exception("Erreur API Gemini: " + statusCode);
-                }
-                
-                // Parser la réponse Gemini
-                JsonNode rootNode = objectMapper.readTree(responseStr);
-                String contentss = rootNode.path("candidates").get(0)
-                    .path("content").path("parts").get(0)
-                    .path("text").asText();
-
-                logger.info("Contenu JSON extrait par Gemini");
-
-                // Parser le JSON des données CV
-                CvStructuredData cvData = parseJsonToCvData(contentss);
-                
-                return cvData;
-            }
+            UpstreamResponse httpResponse = upstreamHttpClient.execute(Upstream.GEMINI, httpPost, deadline);
+            return parseGeminiResponse(httpResponse);
 
         } catch (Exception e) {
             logger.error("Erreur lors de l'extraction avec Gemini", e);
             throw new Exception("Erreur extraction CV avec Gemini: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * URL de l'API Gemini 2.5 Flash (utilise v1beta pour les modèles récents)
+     */
+    private String geminiApiUrl() {
+        return "https://generativelanguage.googleapis.com/v1beta/models/" + GEMINI_MODEL + ":generateContent?key=" + geminiApiKey;
+    }
+
+    /**
+     * URL de l'API Gemini en streaming (événements SSE)
+     */
+    private String geminiStreamApiUrl() {
+        return "https://generativelanguage.googleapis.com/v1beta/models/" + GEMINI_MODEL
+            + ":streamGenerateContent?alt=sse&key=" + geminiApiKey;
+    }
+
+    /**
+     * Construit le corps de la requête Gemini. Si le document a une couche texte exploitable
+     * (PDF numérique, DOCX, texte brut), seul ce texte est envoyé. Sinon le document part en vision,
+     * sans être chargé : l'enveloppe JSON est sérialisée autour d'un marqueur, remplacé à l'envoi
+     * par le document encodé en base64 au fil de sa lecture. Les photos et scans sont d'abord
+     * normalisés (taille, niveaux de gris, JPEG sans EXIF).
+     */
+    private HttpEntity buildGeminiRequestEntity(MultipartFile file, String mimeType, String cvText, String prompt,
+                                                Deadline deadline) throws Exception {
+        if (cvText != null) {
+            return new StringEntity(buildGeminiRequestJson(textDocumentPart(cvText), prompt), ContentType.APPLICATION_JSON);
+        }
+        if (CvTextExtractionService.DOCX.equals(mimeType)) {
+            // Gemini n'accepte pas les DOCX en vision
+            throw new Exception("Document DOCX sans texte exploitable");
+        }
+
+        InputStreamSource document = file;
+        long documentSize = file.getSize();
+        CvImageNormalizationService.NormalizedImage image = cvImageNormalizationService.normalize(file, mimeType, deadline);
+        if (image != null) {
+            document = () -> new ByteArrayInputStream(image.getContent());
+            documentSize = image.getContent().length;
+            mimeType = image.getMimeType();
+        }
+
+        String json = buildGeminiRequestJson(inlineDataPart(INLINE_DATA_MARKER, mimeType), prompt);
+        int markerIndex = json.indexOf(INLINE_DATA_MARKER);
+        return new Base64JsonEntity(
+            json.substring(0, markerIndex),
+            json.substring(markerIndex + INLINE_DATA_MARKER.length()),
+            document,
+            documentSize);
+    }
+
+    /**
+     * Partie "document" en base64, lue par Gemini en vision
+     */
+    private Map<String, Object> inlineDataPart(String base64Content, String mimeType) {
+        Map<String, Object> inlineData = new HashMap<>();
+        inlineData.put("mime_type", mimeType);
+        inlineData.put("data", base64Content);
+        Map<String, Object> part = new HashMap<>();
+        part.put("inline_data", inlineData);
+        return part;
+    }
+
+    /**
+     * Partie "document" sous forme de texte extrait localement
+     */
+    private Map<String, Object> textDocumentPart(String cvText) {
+        Map<String, Object> part = new HashMap<>();
+        part.put("text", "Texte du CV :\n\n" + cvText);
+        return part;
+    }
+
+    /**
+     * Construit le corps JSON de la requête Gemini (prompt + document)
+     */
+    private String buildGeminiRequestJson(Map<String, Object> documentPart, String prompt) throws Exception {
+        // Construire le corps de la requête Gemini
+        Map<String, Object> requestBody = new HashMap<>();
+        
+        // Contents
+        List<Map<String, Object>> contents = new ArrayList<>();
+        Map<String, Object> content = new HashMap<>();
+        
+        // Parts (prompt + document)
+        List<Map<String, Object>> parts = new ArrayList<>();
+        
+        // Part 1: Le prompt texte
+        Map<String, Object> textPart = new HashMap<>();
+        textPart.put("text", prompt);
+        parts.add(textPart);
+        
+        // Part 2: Le document (texte extrait ou base64)
+        parts.add(documentPart);
+        
+        content.put("parts", parts);
+        contents.add(content);
+        
+        requestBody.put("contents", contents);
+        
+        // Configuration de génération pour obtenir du JSON
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("temperature", 0.1);
+        // Note: response_mime_type n'est pas supporté par toutes les versions de l'API
+        // On s'appuie sur les instructions du prompt pour obtenir du JSON
+        requestBody.put("generationConfig", generationConfig);
+
+        return objectMapper.writeValueAsString(requestBody);
+    }
+
+    /**
+     * Vérifie le statut de la réponse Gemini et parse les données CV
+     */
+    private CvStructuredData parseGeminiResponse(UpstreamResponse httpResponse) throws Exception {
+        // Parser le JSON des données CV
+        return parseJsonToCvData(geminiResponseText(httpResponse));
+    }
+
+    /**
+     * Vérifie le statut de la réponse Gemini et retourne le texte généré
+     */
+    private String geminiResponseText(UpstreamResponse httpResponse) throws Exception {
+        int statusCode = httpResponse.getStatusCode();
+        String responseStr = httpResponse.getBody();
+
+        logger.info("Réponse Gemini reçue (status: {})", statusCode);
+            
+        if (statusCode != 200) {
+            logger.error("Erreur API Gemini: {}", responseStr);
+            throw new Exception("Erreur API Gemini: " + statusCode);
+        }
+        
+        // Parser la réponse Gemini
+        JsonNode rootNode = objectMapper.readTree(responseStr);
+        String contentss = rootNode.path("candidates").get(0)
+            .path("content").path("parts").get(0)
+            .path("text").asText();
+
+        logger.info("Contenu JSON extrait par Gemini");
+        return contentss;
+    }
     
     /**
-     * Construit le prompt pour l'extraction de CV
-     */
-    private String buildExtractionPrompt() {
-        return "Analyse ce CV et extrait TOUTES les informations en JSON structuré.\n\n" +
-               "IMPORTANT: Retourne UNIQUEMENT du JSON valide, sans texte additionnel, sans backticks, sans markdown.\n\n" +
-               "Structure JSON attendue:\n" +
-               "{\n" +
-               "  \"personal_info\": {\n" +
-               "    \"name\": \"Nom complet\",\n" +
-               "    \"email\": \"email@example.com\",\n" +
-               "    \"phone\": \"+33...\",\n" +
-               "    \"location\": \"Ville, Pays\",\n" +
-               "    \"linkedin\": \"URL LinkedIn (si présent)\",\n" +
-               "    \"github\": \"URL GitHub (si présent)\",\n" +
-               "    \"portfolio\": \"URL portfolio (si présent)\"\n" +
-               "  },\n" +
-               "  \"experiences\": [\n" +
-               "    {\n" +
-               "      \"title\": \"Titre du poste\",\n" +
-               "      \"company\": \"Nom de l'entreprise\",\n" +
-               "      \"location\": \"Lieu\",\n" +
-               "      \"start_date\": \"MM/YYYY\",\n" +
-               "      \"end_date\": \"MM/YYYY ou 'Présent'\",\n" +
-               "      \"description\": \"Description des responsabilités et réalisations\",\n" +
-               "      \"achievements\": [\"Réalisation 1\", \"Réalisation 2\"]\n" +
-               "    }\n" +
-               "  ],\n" +
-               "  \"education\": [\n" +
-               "    {\n" +
-               "      \"degree\": \"Diplôme obtenu\",\n" +
-               "      \"institution\": \"Nom de l'école/université\",\n" +
-               "      \"location\": \"Lieu\",\n" +
-               "      \"start_date\": \"YYYY\",\n" +
-               "      \"end_date\": \"YYYY\",\n" +
-               "      \"field_of_study\": \"Domaine d'étude\",\n" +
-               "      \"grade\": \"Note/Mention (si présent)\"\n" +
-               "    }\n" +
-               "  ],\n" +
-               "  \"skills\": [\n" +
-               "    {\n" +
-               "      \"category\": \"Langages de programmation\",\n" +
-               "      \"items\": [\"Java\", \"Python\", \"JavaScript\"]\n" +
-               "    },\n" +
-               "    {\n" +
-               "      \"category\": \"Frameworks\",\n" +
-               "      \"items\": [\"Spring Boot\", \"React\", \"Django\"]\n" +
-               "    }\n" +
-               "  ],\n" +
-               "  \"languages\": [\n" +
-               "    {\n" +
-               "      \"language\": \"Français\",\n" +
-               "      \"level\": \"Langue maternelle\"\n" +
-               "    },\n" +
-               "    {\n" +
-               "      \"language\": \"Anglais\",\n" +
-               "      \"level\": \"Courant (C1)\"\n" +
-               "    }\n" +
-               "  ],\n" +
-               "  \"certifications\": [\n" +
-               "    {\n" +
-               "      \"name\": \"Nom de la certification\",\n" +
-               "      \"issuer\": \"Organisme émetteur\",\n" +
-               "      \"date\": \"MM/YYYY\",\n" +
-               "      \"credential_id\": \"ID (si présent)\"\n" +
-               "    }\n" +
-               "  ],\n" +
-               "  \"projects\": [\n" +
-               "    {\n" +
-               "      \"name\": \"Nom du projet\",\n" +
-               "      \"description\": \"Description\",\n" +
-               "      \"technologies\": [\"Tech1\", \"Tech2\"],\n" +
-               "      \"url\": \"URL (si présent)\"\n" +
-               "    }\n" +
-               "  ],\n" +
-               "  \"summary\": \"Résumé professionnel (si présent sur le CV)\"\n" +
-               "}\n\n" +
-               "INSTRUCTIONS:\n" +
-               "- Extrait toutes les informations visibles sur le CV\n" +
-               "- Si une information n'est pas présente, utilise null ou [] pour les listes\n" +
-               "- Normalise les dates au format indiqué\n" +
-               "- Groupe les compétences par catégories logiques\n" +
-               "- Retourne UNIQUEMENT du JSON, pas de texte avant ou après\n" +
-               "- N'ajoute pas de backticks markdown (```json)";
+     * Construit le prompt d'extraction du profil : seules ses sections figurent dans la structure
+     * attendue, et les profils étroits n'y demandent que les champs utiles (moins de tokens générés).
+     * Le prompt FULL est la structure complète.
+     */
+    private String buildExtractionPrompt(CvExtractionProfile profile) {
+        boolean full = profile == CvExtractionProfile.FULL;
+        List<String> sections = profile.getSections();
+        StringBuilder prompt = new StringBuilder();
+        prompt.append(full
+            ? "Analyse ce CV et extrait TOUTES les informations en JSON structuré.\n\n"
+            : "Analyse ce CV et extrait UNIQUEMENT les informations de la structure ci-dessous en JSON structuré.\n\n");
+        prompt.append("IMPORTANT: Retourne UNIQUEMENT du JSON valide, sans texte additionnel, sans backticks, sans markdown.\n\n")
+              .append("Structure JSON attendue:\n")
+              .append("{\n");
+        for (int i = 0; i < sections.size(); i++) {
+            prompt.append(sectionSchema(sections.get(i), full)).append(i < sections.size() - 1 ? ",\n" : "\n");
+        }
+        prompt.append("}\n\n")
+              .append("INSTRUCTIONS:\n")
+              .append(full
+                  ? "- Extrait toutes les informations visibles sur le CV\n"
+                  : "- N'extrait que les champs de la structure ci-dessus, sans autre section ni autre champ\n")
+              .append("- Si une information n'est pas présente, utilise null ou [] pour les listes\n");
+        if (sections.contains("experiences") || sections.contains("education")) {
+            prompt.append("- Normalise les dates au format indiqué\n");
+        }
+        if (sections.contains("skills")) {
+            prompt.append("- Groupe les compétences par catégories logiques\n");
+        }
+        prompt.append("- Retourne UNIQUEMENT du JSON, pas de texte avant ou après\n")
+              .append("- N'ajoute pas de backticks markdown (```json)");
+        return prompt.toString();
+    }
+
+    /**
+     * Structure attendue d'une section ; full = false donne la forme réduite
+     * (champs lus par la recherche d'emploi) quand elle existe
+     */
+    private String sectionSchema(String section, boolean full) {
+        return switch (section) {
+            case "personal_info" -> full
+                ? "  \"personal_info\": {\n" +
+                  "    \"name\": \"Nom complet\",\n" +
+                  "    \"email\": \"email@example.com\",\n" +
+                  "    \"phone\": \"+33...\",\n" +
+                  "    \"location\": \"Ville, Pays\",\n" +
+                  "    \"linkedin\": \"URL LinkedIn (si présent)\",\n" +
+                  "    \"github\": \"URL GitHub (si présent)\",\n" +
+                  "    \"portfolio\": \"URL portfolio (si présent)\"\n" +
+                  "  }"
+                : "  \"personal_info\": {\n" +
+                  "    \"name\": \"Nom complet\",\n" +
+                  "    \"location\": \"Ville, Pays\"\n" +
+                  "  }";
+            case "experiences" -> full
+                ? "  \"experiences\": [\n" +
+                  "    {\n" +
+                  "      \"title\": \"Titre du poste\",\n" +
+                  "      \"company\": \"Nom de l'entreprise\",\n" +
+                  "      \"location\": \"Lieu\",\n" +
+                  "      \"start_date\": \"MM/YYYY\",\n" +
+                  "      \"end_date\": \"MM/YYYY ou 'Présent'\",\n" +
+                  "      \"description\": \"Description des responsabilités et réalisations\",\n" +
+                  "      \"achievements\": [\"Réalisation 1\", \"Réalisation 2\"]\n" +
+                  "    }\n" +
+                  "  ]"
+                : "  \"experiences\": [\n" +
+                  "    {\n" +
+                  "      \"title\": \"Titre du poste\",\n" +
+                  "      \"company\": \"Nom de l'entreprise\",\n" +
+                  "      \"start_date\": \"MM/YYYY\",\n" +
+                  "      \"end_date\": \"MM/YYYY ou 'Présent'\"\n" +
+                  "    }\n" +
+                  "  ]";
+            case "education" -> full
+                ? "  \"education\": [\n" +
+                  "    {\n" +
+                  "      \"degree\": \"Diplôme obtenu\",\n" +
+                  "      \"institution\": \"Nom de l'école/université\",\n" +
+                  "      \"location\": \"Lieu\",\n" +
+                  "      \"start_date\": \"YYYY\",\n" +
+                  "      \"end_date\": \"YYYY\",\n" +
+                  "      \"field_of_study\": \"Domaine d'étude\",\n" +
+                  "      \"grade\": \"Note/Mention (si présent)\"\n" +
+                  "    }\n" +
+                  "  ]"
+                : "  \"education\": [\n" +
+                  "    {\n" +
+                  "      \"degree\": \"Diplôme obtenu\",\n" +
+                  "      \"institution\": \"Nom de l'école/université\",\n" +
+                  "      \"field_of_study\": \"Domaine d'étude\"\n" +
+                  "    }\n" +
+                  "  ]";
+            case "skills" ->
+                "  \"skills\": [\n" +
+                "    {\n" +
+                "      \"category\": \"Langages de programmation\",\n" +
+                "      \"items\": [\"Java\", \"Python\", \"JavaScript\"]\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"category\": \"Frameworks\",\n" +
+                "      \"items\": [\"Spring Boot\", \"React\", \"Django\"]\n" +
+                "    }\n" +
+                "  ]";
+            case "languages" ->
+                "  \"languages\": [\n" +
+                "    {\n" +
+                "      \"language\": \"Français\",\n" +
+                "      \"level\": \"Langue maternelle\"\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"language\": \"Anglais\",\n" +
+                "      \"level\": \"Courant (C1)\"\n" +
+                "    }\n" +
+                "  ]";
+            case "certifications" ->
+                "  \"certifications\": [\n" +
+                "    {\n" +
+                "      \"name\": \"Nom de la certification\",\n" +
+                "      \"issuer\": \"Organisme émetteur\",\n" +
+                "      \"date\": \"MM/YYYY\",\n" +
+                "      \"credential_id\": \"ID (si présent)\"\n" +
+                "    }\n" +
+                "  ]";
+            case "projects" ->
+                "  \"projects\": [\n" +
+                "    {\n" +
+                "      \"name\": \"Nom du projet\",\n" +
+                "      \"description\": \"Description\",\n" +
+                "      \"technologies\": [\"Tech1\", \"Tech2\"],\n" +
+                "      \"url\": \"URL (si présent)\"\n" +
+                "    }\n" +
+                "  ]";
+            case "summary" -> full
+                ? "  \"summary\": \"Résumé professionnel (si présent sur le CV)\""
+                : "  \"summary\": \"Intitulé du poste visé ou accroche du CV, en une seule ligne (si présent)\"";
+            default -> throw new IllegalArgumentException("Section inconnue: " + section);
+        };
+    }
+
+    /**
+     * Prompt du mode fusionné : extraction JOB_SEARCH, plus une clé "search_query"
+     * contenant la requête Google, selon les mêmes consignes que la génération OpenAI
+     */
+    private String buildQueryExtractionPrompt(String location, Boolean includeRemote) {
+        String remoteInstruction = Boolean.TRUE.equals(includeRemote)
+            ? "Si le travail peut être fait à distance (ex : développement, télétravail), inclure `remote` ou `télétravail`"
+            : "Exclure les postes en remote, se concentrer uniquement sur les postes présentiels";
+
+        return buildExtractionPrompt(CvExtractionProfile.JOB_SEARCH) + "\n\n" +
+               "REQUÊTE GOOGLE:\n" +
+               "Ajoute au même objet JSON une clé \"search_query\" (chaîne) : une requête Google extrêmement optimisée " +
+               "pour trouver des offres d'emploi correspondant exactement à ce profil.\n" +
+               "- Utilise les opérateurs Google avancés : `AND`, `OR`, `\"` pour les expressions exactes, et des parenthèses pour les priorités\n" +
+               "- Poste adapté au CV et compétences principales du CV\n" +
+               "- Localisation : " + location + "\n" +
+               "- Si le travail nécessite la présence physique (ex : commerce, vente, manutention), inclure explicitement `présentiel`\n" +
+               "- " + remoteInstruction + "\n" +
+               "- Seulement la requête finale, prête à copier-coller, sans explication (guillemets internes échappés en JSON)";
     }
 
     /**
      * Parse le JSON retourné par Gemini en objet Java
      */
     private CvStructuredData parseJsonToCvData(String jsonContent) throws Exception {
+        return toCvData(readGeminiJson(jsonContent));
+    }
+
+    /**
+     * Nettoie et lit le JSON généré par Gemini
+     */
+    private JsonNode readGeminiJson(String jsonContent) throws Exception {
         try {
             // Nettoyer le JSON (enlever les backticks markdown si présents)
             jsonContent = jsonContent.trim();
@@ -261,100 +1012,7 @@ public class GeminiCvExtractionService {
             
             logger.debug("JSON normalisé pour parsing: {}", jsonContent.substring(0, Math.min(200, jsonContent.length())));
 
-            JsonNode rootNode = objectMapper.readTree(jsonContent);
-            
-            CvStructuredData cvData = new CvStructuredData();
-            
-            // Personal Info
-            JsonNode personalInfo = rootNode.path("personal_info");
-            cvData.setPersonalInfo(new PersonalInfo(
-                IASearchUtils.normalizeAIGeneratedText(personalInfo.path("name").asText("")),
-                personalInfo.path("email").asText(null),
-                personalInfo.path("phone").asText(null),
-                IASearchUtils.normalizeAIGeneratedText(personalInfo.path("location").asText(null)),
-                personalInfo.path("linkedin").asText(null),
-                personalInfo.path("github").asText(null),
-                personalInfo.path("portfolio").asText(null)
-            ));
-            
-            // Experiences
-            List<Experience> experiences = new ArrayList<>();
-            rootNode.path("experiences").forEach(exp -> {
-                experiences.add(new Experience(
-                    IASearchUtils.normalizeAIGeneratedText(exp.path("title").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(exp.path("company").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(exp.path("location").asText(null)),
-                    exp.path("start_date").asText(""),
-                    exp.path("end_date").asText(""),
-                    IASearchUtils.normalizeAIGeneratedText(exp.path("description").asText("")),
-                    normalizeStringList(parseStringList(exp.path("achievements")))
-                ));
-            });
-            cvData.setExperiences(experiences);
-            
-            // Education
-            List<Education> education = new ArrayList<>();
-            rootNode.path("education").forEach(edu -> {
-                education.add(new Education(
-                    IASearchUtils.normalizeAIGeneratedText(edu.path("degree").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(edu.path("institution").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(edu.path("location").asText(null)),
-                    edu.path("start_date").asText(""),
-                    edu.path("end_date").asText(""),
-                    IASearchUtils.normalizeAIGeneratedText(edu.path("field_of_study").asText(null)),
-                    IASearchUtils.normalizeAIGeneratedText(edu.path("grade").asText(null))
-                ));
-            });
-            cvData.setEducation(education);
-            
-            // Skills
-            List<SkillCategory> skills = new ArrayList<>();
-            rootNode.path("skills").forEach(skill -> {
-                skills.add(new SkillCategory(
-                    IASearchUtils.normalizeAIGeneratedText(skill.path("category").asText("")),
-                    normalizeStringList(parseStringList(skill.path("items")))
-                ));
-            });
-            cvData.setSkills(skills);
-            
-            // Languages
-            List<Language> languages = new ArrayList<>();
-            rootNode.path("languages").forEach(lang -> {
-                languages.add(new Language(
-                    IASearchUtils.normalizeAIGeneratedText(lang.path("language").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(lang.path("level").asText(""))
-                ));
-            });
-            cvData.setLanguages(languages);
-            
-            // Certifications
-            List<Certification> certifications = new ArrayList<>();
-            rootNode.path("certifications").forEach(cert -> {
-                certifications.add(new Certification(
-                    IASearchUtils.normalizeAIGeneratedText(cert.path("name").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(cert.path("issuer").asText("")),
-                    cert.path("date").asText(""),
-                    cert.path("credential_id").asText(null)
-                ));
-            });
-            cvData.setCertifications(certifications);
-            
-            // Projects
-            List<Project> projects = new ArrayList<>();
-            rootNode.path("projects").forEach(proj -> {
-                projects.add(new Project(
-                    IASearchUtils.normalizeAIGeneratedText(proj.path("name").asText("")),
-                    IASearchUtils.normalizeAIGeneratedText(proj.path("description").asText("")),
-                    normalizeStringList(parseStringList(proj.path("technologies"))),
-                    proj.path("url").asText(null)
-                ));
-            });
-            cvData.setProjects(projects);
-            
-            // Summary
-            cvData.setSummary(IASearchUtils.normalizeAIGeneratedText(rootNode.path("summary").asText(null)));
-            
-            return cvData;
+            return objectMapper.readTree(jsonContent);
             
         } catch (Exception e) {
             logger.error("Erreur lors du parsing JSON vers CvData", e);
@@ -362,6 +1020,125 @@ public class GeminiCvExtractionService {
         }
     }
 
+    private CvStructuredData toCvData(JsonNode rootNode) {
+        CvStructuredData cvData = new CvStructuredData();
+        for (String section : CV_SECTIONS) {
+            applySection(cvData, section, rootNode.path(section));
+        }
+        return cvData;
+    }
+
+    /**
+     * Remplit une section des données CV à partir de son nœud JSON
+     * (utilisé pour le document complet comme pour les sections reçues en streaming)
+     */
+    private void applySection(CvStructuredData cvData, String section, JsonNode node) {
+        switch (section) {
+            case "personal_info" -> cvData.setPersonalInfo(new PersonalInfo(
+                IASearchUtils.normalizeAIGeneratedText(node.path("name").asText("")),
+                node.path("email").asText(null),
+                node.path("phone").asText(null),
+                IASearchUtils.normalizeAIGeneratedText(node.path("location").asText(null)),
+                node.path("linkedin").asText(null),
+                node.path("github").asText(null),
+                node.path("portfolio").asText(null)
+            ));
+            case "experiences" -> {
+                List<Experience> experiences = new ArrayList<>();
+                node.forEach(exp -> {
+                    experiences.add(new Experience(
+                        IASearchUtils.normalizeAIGeneratedText(exp.path("title").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(exp.path("company").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(exp.path("location").asText(null)),
+                        exp.path("start_date").asText(""),
+                        exp.path("end_date").asText(""),
+                        IASearchUtils.normalizeAIGeneratedText(exp.path("description").asText("")),
+                        normalizeStringList(parseStringList(exp.path("achievements")))
+                    ));
+                });
+                cvData.setExperiences(experiences);
+            }
+            case "education" -> {
+                List<Education> education = new ArrayList<>();
+                node.forEach(edu -> {
+                    education.add(new Education(
+                        IASearchUtils.normalizeAIGeneratedText(edu.path("degree").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(edu.path("institution").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(edu.path("location").asText(null)),
+                        edu.path("start_date").asText(""),
+                        edu.path("end_date").asText(""),
+                        IASearchUtils.normalizeAIGeneratedText(edu.path("field_of_study").asText(null)),
+                        IASearchUtils.normalizeAIGeneratedText(edu.path("grade").asText(null))
+                    ));
+                });
+                cvData.setEducation(education);
+            }
+            case "skills" -> {
+                List<SkillCategory> skills = new ArrayList<>();
+                node.forEach(skill -> {
+                    skills.add(new SkillCategory(
+                        IASearchUtils.normalizeAIGeneratedText(skill.path("category").asText("")),
+                        normalizeStringList(parseStringList(skill.path("items")))
+                    ));
+                });
+                cvData.setSkills(skills);
+            }
+            case "languages" -> {
+                List<Language> languages = new ArrayList<>();
+                node.forEach(lang -> {
+                    languages.add(new Language(
+                        IASearchUtils.normalizeAIGeneratedText(lang.path("language").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(lang.path("level").asText(""))
+                    ));
+                });
+                cvData.setLanguages(languages);
+            }
+            case "certifications" -> {
+                List<Certification> certifications = new ArrayList<>();
+                node.forEach(cert -> {
+                    certifications.add(new Certification(
+                        IASearchUtils.normalizeAIGeneratedText(cert.path("name").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(cert.path("issuer").asText("")),
+                        cert.path("date").asText(""),
+                        cert.path("credential_id").asText(null)
+                    ));
+                });
+                cvData.setCertifications(certifications);
+            }
+            case "projects" -> {
+                List<Project> projects = new ArrayList<>();
+                node.forEach(proj -> {
+                    projects.add(new Project(
+                        IASearchUtils.normalizeAIGeneratedText(proj.path("name").asText("")),
+                        IASearchUtils.normalizeAIGeneratedText(proj.path("description").asText("")),
+                        normalizeStringList(parseStringList(proj.path("technologies"))),
+                        proj.path("url").asText(null)
+                    ));
+                });
+                cvData.setProjects(projects);
+            }
+            case "summary" -> cvData.setSummary(IASearchUtils.normalizeAIGeneratedText(node.asText(null)));
+            default -> logger.debug("Section inconnue ignorée: {}", section);
+        }
+    }
+
+    /**
+     * Valeur d'une section, telle qu'envoyée au client en streaming
+     */
+    private Object sectionValue(CvStructuredData cvData, String section) {
+        return switch (section) {
+            case "personal_info" -> cvData.getPersonalInfo();
+            case "experiences" -> cvData.getExperiences();
+            case "education" -> cvData.getEducation();
+            case "skills" -> cvData.getSkills();
+            case "languages" -> cvData.getLanguages();
+            case "certifications" -> cvData.getCertifications();
+            case "projects" -> cvData.getProjects();
+            case "summary" -> cvData.getSummary();
+            default -> null;
+        };
+    }
+
     /**
      * Parse une liste de strings depuis un JsonNode
      */
@@ -392,7 +1169,8 @@ public class GeminiCvExtractionService {
      */
     private String determineMimeType(MultipartFile file) {
         String contentType = file.getContentType();
-        if (contentType != null && !contentType.isEmpty()) {
+        // application/octet-stream : type inconnu du client (certains navigateurs, entrées d'archives)
+        if (contentType != null && !contentType.isEmpty() && !contentType.equals("application/octet-stream")) {
             return contentType;
         }
         
@@ -400,6 +1178,7 @@ public class GeminiCvExtractionService {
         String filename = file.getOriginalFilename();
         if (filename != null) {
             if (filename.toLowerCase().endsWith(".pdf")) return "application/pdf";
+            if (filename.toLowerCase().endsWith(".docx")) return CvTextExtractionService.DOCX;
             if (filename.toLowerCase().endsWith(".jpg") || filename.toLowerCase().endsWith(".jpeg")) return "image/jpeg";
             if (filename.toLowerCase().endsWith(".png")) return "image/png";
             if (filename.toLowerCase().endsWith(".txt")) return "text/plain";
@@ -410,6 +1189,22 @@ public class GeminiCvExtractionService {
 
     // ==================== Classes internes pour les données structurées ====================
 
+    /**
+     * Résultat du mode fusionné : données du CV et requête Google (null si non générée)
+     */
+    public static class CvExtractionWithQuery {
+        private final CvStructuredData cvData;
+        private final String searchQuery;
+
+        public CvExtractionWithQuery(CvStructuredData cvData, String searchQuery) {
+            this.cvData = cvData;
+            this.searchQuery = searchQuery;
+        }
+
+        public CvStructuredData getCvData() { return cvData; }
+        public String getSearchQuery() { return searchQuery; }
+    }
+
     public static class CvStructuredData {
         private PersonalInfo personalInfo;
         private List<Experience> experiences = new ArrayList<>();
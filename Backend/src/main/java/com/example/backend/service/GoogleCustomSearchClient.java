@@ -0,0 +1,142 @@
+package com.example.backend.service;
+
+import com.example.backend.cache.CacheRegistry;
+import com.example.backend.cache.TtlCache;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.Upstream;
+import com.example.backend.upstream.UpstreamHttpClient;
+import com.example.backend.upstream.UpstreamResponse;
+import com.example.backend.utils.SearchQueryUtils;
+import jakarta.annotation.PostConstruct;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.net.URIBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Accès partagé à l'API Google Custom Search, avec cache des réponses.
+ * La clé de cache est la forme canonique de la requête + num + start :
+ * une requête déjà vue ne consomme plus de quota tant que l'entrée n'a pas expiré.
+ * Seules les réponses 200 sont mises en cache.
+ */
+@Service
+public class GoogleCustomSearchClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GoogleCustomSearchClient.class);
+
+    private static final String SEARCH_URL = "https://www.googleapis.com/customsearch/v1";
+
+    @Value("${google.api.key}")
+    private String googleApiKey;
+
+    @Value("${google.search.engine.id}")
+    private String searchEngineId;
+
+    @Value("${google.search.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${google.search.cache.ttl-minutes:360}")
+    private long cacheTtlMinutes;
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    private TtlCache<String, UpstreamResponse> responseCache;
+
+    @PostConstruct
+    public void initCache() {
+        responseCache = cacheRegistry.register("google-search", cacheMaxEntries, Duration.ofMinutes(cacheTtlMinutes));
+    }
+
+    /**
+     * Exécute une recherche (num : 1 à 10 résultats, start : rang du premier résultat, à partir de 1)
+     */
+    public UpstreamResponse search(String query, int num, int start) throws Exception {
+        return search(query, num, start, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #search(String, int, int)}, dans la limite de l'échéance de la requête
+     */
+    public UpstreamResponse search(String query, int num, int start, Deadline deadline) throws Exception {
+        String cacheKey = cacheKey(query, num, start);
+        UpstreamResponse cached = responseCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("Réponse Google trouvée en cache ({})", cacheKey);
+            return cached;
+        }
+
+        UpstreamResponse response = upstreamHttpClient.execute(Upstream.GOOGLE_SEARCH, new HttpGet(buildSearchUri(query, num, start)), deadline);
+        if (response.getStatusCode() == 200) {
+            responseCache.put(cacheKey, response);
+        }
+        return response;
+    }
+
+    /**
+     * Variante non bloquante de {@link #search(String, int, int)}
+     */
+    public CompletableFuture<UpstreamResponse> searchAsync(String query, int num, int start) {
+        return searchAsync(query, num, start, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #searchAsync(String, int, int)}, dans la limite de l'échéance de la requête
+     */
+    public CompletableFuture<UpstreamResponse> searchAsync(String query, int num, int start, Deadline deadline) {
+        String cacheKey = cacheKey(query, num, start);
+        UpstreamResponse cached = responseCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("Réponse Google trouvée en cache ({})", cacheKey);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        try {
+            SimpleHttpRequest request = SimpleRequestBuilder.get(buildSearchUri(query, num, start)).build();
+            CompletableFuture<UpstreamResponse> exchange = upstreamHttpClient.executeAsync(Upstream.GOOGLE_SEARCH, request, deadline);
+            CompletableFuture<UpstreamResponse> result = exchange.thenApply(response -> {
+                if (response.getStatusCode() == 200) {
+                    responseCache.put(cacheKey, response);
+                }
+                return response;
+            });
+            // Annuler le résultat annule aussi l'appel en cours (ou en attente de la limite de débit)
+            result.whenComplete((response, error) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(false);
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private String cacheKey(String query, int num, int start) {
+        return SearchQueryUtils.canonicalize(query) + "|num=" + num + "|start=" + start;
+    }
+
+    private URI buildSearchUri(String query, int num, int start) throws Exception {
+        URIBuilder builder = new URIBuilder(SEARCH_URL)
+            .addParameter("key", googleApiKey)
+            .addParameter("cx", searchEngineId)
+            .addParameter("q", query)
+            .addParameter("num", String.valueOf(num));
+        if (start > 1) {
+            builder.addParameter("start", String.valueOf(start));
+        }
+        return builder.build();
+    }
+}
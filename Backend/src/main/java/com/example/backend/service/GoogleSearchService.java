@@ -1,24 +1,20 @@
 package com.example.backend.service;
 
 import com.example.backend.dto.JobResult;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.Futures;
+import com.example.backend.upstream.UpstreamResponse;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.net.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service pour effectuer des recherches Google via Custom Search API
@@ -28,11 +24,16 @@ public class GoogleSearchService {
 
     private static final Logger logger = LoggerFactory.getLogger(GoogleSearchService.class);
 
-    @Value("${google.api.key}")
-    private String googleApiKey;
+    // Google Custom Search : 10 résultats par page, 100 résultats au plus (start <= 91)
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_RESULTS = 100;
 
-    @Value("${google.search.engine.id}")
-    private String searchEngineId;
+    @Autowired
+    private GoogleCustomSearchClient customSearchClient;
+
+    // Pages demandées en plus du strict nécessaire, pour compenser les résultats écartés par isJobRelated
+    @Value("${google.search.extra-pages:1}")
+    private int extraPages;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -52,72 +53,171 @@ public class GoogleSearchService {
      * Effectue une recherche d'emplois via Google Custom Search
      * 
      * @param query La requête Google optimisée
-     * @param maxResults Le nombre maximum de résultats (max 10 par requête API)
+     * @param maxResults Le nombre maximum de résultats (jusqu'à 100, par pages de 10 récupérées en parallèle)
      * @return Liste des résultats d'emplois trouvés
      */
     public List<JobResult> searchJobs(String query, int maxResults) throws Exception {
+        return searchJobs(query, maxResults, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #searchJobs(String, int)}, dans la limite de l'échéance de la requête
+     */
+    public List<JobResult> searchJobs(String query, int maxResults, Deadline deadline) throws Exception {
         logger.info("===== Recherche Google =====");
         logger.info("Requête: {}", query);
         logger.info("Max résultats: {}", maxResults);
 
-        List<JobResult> allResults = new ArrayList<>();
+        List<JobResult> allResults;
         
-        // Google Custom Search API limite à 10 résultats par requête
-        int resultsPerPage = Math.min(maxResults, 10);
+        try {
+            logger.info("Envoi de la requête à Google Custom Search API...");
+
+            if (maxResults <= PAGE_SIZE) {
+                UpstreamResponse httpResponse = customSearchClient.search(query, resultsPerPage(maxResults), 1, deadline);
+                allResults = parseSearchResponse(httpResponse);
+            } else {
+                // Plusieurs pages : envoyées en parallèle sur le client asynchrone
+                return searchPagesAsync(query, maxResults, deadline).get();
+            }
+
+        } catch (Exception e) {
+            Throwable cause = Futures.unwrap(e);
+            logger.error("Erreur lors de la recherche Google", cause);
+            throw new Exception("Erreur recherche Google: " + cause.getMessage(), cause);
+        }
+
+        // Supprimer les doublons basés sur l'URL
+        allResults = removeDuplicates(allResults);
         
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            
-            // Construire l'URL de l'API
-            URI uri = new URIBuilder("https://www.googleapis.com/customsearch/v1")
-                .addParameter("key", googleApiKey)
-                .addParameter("cx", searchEngineId)
-                .addParameter("q", query)
-                .addParameter("num", String.valueOf(resultsPerPage))
-                .build();
+        return allResults;
+    }
 
-            HttpGet httpGet = new HttpGet(uri);
+    /**
+     * Variante non bloquante de {@link #searchJobs(String, int)}
+     */
+    public CompletableFuture<List<JobResult>> searchJobsAsync(String query, int maxResults) {
+        return searchJobsAsync(query, maxResults, Deadline.none());
+    }
 
-            logger.info("Envoi de la requête à Google Custom Search API...");
+    /**
+     * Comme {@link #searchJobsAsync(String, int)}, dans la limite de l'échéance de la requête
+     */
+    public CompletableFuture<List<JobResult>> searchJobsAsync(String query, int maxResults, Deadline deadline) {
+        logger.info("===== Recherche Google (async) =====");
+        logger.info("Requête: {}", query);
 
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpGet)) {
-                int statusCode = httpResponse.getCode();
-                
-                BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(httpResponse.getEntity().getContent(), StandardCharsets.UTF_8));
-                String responseStr = reader.lines().collect(Collectors.joining("\n"));
+        if (maxResults > PAGE_SIZE) {
+            return searchPagesAsync(query, maxResults, deadline);
+        }
+        return customSearchClient.searchAsync(query, resultsPerPage(maxResults), 1, deadline)
+            .thenApply(Futures.unchecked(this::parseSearchResponse))
+            .thenApply(this::removeDuplicates);
+    }
+
+    /**
+     * Récupère les pages 1..N en parallèle (N = pages nécessaires + extra-pages), puis les fusionne
+     * dans l'ordre des pages sans doublons. Dès que les premières pages reçues, prises dans l'ordre,
+     * contiennent assez d'offres retenues par isJobRelated, les pages encore en attente sont annulées.
+     * Une page au-delà de la première qui échoue est ignorée (résultats partiels) ;
+     * l'échec de la première page fait échouer la recherche.
+     */
+    private CompletableFuture<List<JobResult>> searchPagesAsync(String query, int maxResults, Deadline deadline) {
+        int wanted = Math.min(maxResults, MAX_RESULTS);
+        int pageCount = Math.min((wanted + PAGE_SIZE - 1) / PAGE_SIZE + Math.max(0, extraPages), MAX_RESULTS / PAGE_SIZE);
+        logger.info("Recherche Google sur {} pages en parallèle ({} résultats souhaités)", pageCount, wanted);
 
-                logger.info("Réponse Google reçue (status: {})", statusCode);
+        CompletableFuture<List<JobResult>> merged = new CompletableFuture<>();
+        List<CompletableFuture<UpstreamResponse>> requests = new ArrayList<>();
+        List<CompletableFuture<List<JobResult>>> pages = new ArrayList<>();
+        for (int page = 0; page < pageCount; page++) {
+            int start = page * PAGE_SIZE + 1;
+            CompletableFuture<UpstreamResponse> request = customSearchClient.searchAsync(query, PAGE_SIZE, start, deadline);
+            requests.add(request);
+            CompletableFuture<List<JobResult>> results = request.thenApply(Futures.unchecked(this::parseSearchResponse));
+            if (page > 0) {
+                results = results.exceptionally(error -> {
+                    // Page annulée après un arrêt anticipé : rien d'anormal
+                    if (!(Futures.unwrap(error) instanceof CancellationException) && !merged.isDone()) {
+                        logger.warn("Page Google {} ignorée: {}", start, Futures.unwrap(error).getMessage());
+                    }
+                    return List.of();
+                });
+            }
+            pages.add(results);
+        }
 
-                if (statusCode != 200) {
-                    logger.error("Erreur API Google: {}", responseStr);
-                    throw new Exception("Erreur API Google: " + statusCode);
+        Runnable tryComplete = () -> {
+            // Préfixe contigu de pages terminées, fusionné dans l'ordre
+            List<JobResult> prefix = new ArrayList<>();
+            int done = 0;
+            for (CompletableFuture<List<JobResult>> page : pages) {
+                if (!page.isDone()) {
+                    break;
                 }
-                
-                // Parser la réponse Google
-                JsonNode rootNode = objectMapper.readTree(responseStr);
-                JsonNode items = rootNode.path("items");
-
-                if (items.isArray()) {
-                    for (JsonNode item : items) {
-                        JobResult jobResult = parseSearchResult(item);
-                        if (jobResult != null && isJobRelated(jobResult)) {
-                            allResults.add(jobResult);
+                if (page.isCompletedExceptionally()) {
+                    merged.completeExceptionally(Futures.unwrap(page.exceptionNow()));
+                    return;
+                }
+                prefix.addAll(page.join());
+                done++;
+            }
+            List<JobResult> unique = removeDuplicates(prefix);
+            if (unique.size() >= wanted || done == pages.size()) {
+                if (merged.complete(unique.size() > wanted ? new ArrayList<>(unique.subList(0, wanted)) : unique)) {
+                    // Les pages encore en attente (limite de débit, réponse) ne sont plus utiles
+                    int cancelled = 0;
+                    for (CompletableFuture<UpstreamResponse> request : requests) {
+                        if (request.cancel(false)) {
+                            cancelled++;
                         }
                     }
+                    logger.info("Recherche Google terminée: {} résultats ({} pages reçues, {} annulées)",
+                        Math.min(unique.size(), wanted), done, cancelled);
                 }
-
-                logger.info("Résultats trouvés: {}", allResults.size());
             }
+        };
+        pages.forEach(page -> page.whenComplete((results, error) -> tryComplete.run()));
+        return merged;
+    }
 
-        } catch (Exception e) {
-            logger.error("Erreur lors de la recherche Google", e);
-            throw new Exception("Erreur recherche Google: " + e.getMessage(), e);
-        }
+    /**
+     * Google Custom Search limite à 10 résultats par requête
+     */
+    private int resultsPerPage(int maxResults) {
+        return Math.min(maxResults, PAGE_SIZE);
+    }
 
-        // Supprimer les doublons basés sur l'URL
-        allResults = removeDuplicates(allResults);
+    /**
+     * Vérifie le statut de la réponse Google et filtre les offres d'emploi
+     */
+    private List<JobResult> parseSearchResponse(UpstreamResponse httpResponse) throws Exception {
+        int statusCode = httpResponse.getStatusCode();
+        String responseStr = httpResponse.getBody();
+
+        logger.info("Réponse Google reçue (status: {})", statusCode);
+
+        if (statusCode != 200) {
+            logger.error("Erreur API Google: {}", responseStr);
+            throw new Exception("Erreur API Google: " + statusCode);
+        }
         
-        return allResults;
+        // Parser la réponse Google
+        List<JobResult> results = new ArrayList<>();
+        JsonNode rootNode = objectMapper.readTree(responseStr);
+        JsonNode items = rootNode.path("items");
+
+        if (items.isArray()) {
+            for (JsonNode item : items) {
+                JobResult jobResult = parseSearchResult(item);
+                if (jobResult != null && isJobRelated(jobResult)) {
+                    results.add(jobResult);
+                }
+            }
+        }
+
+        logger.info("Résultats trouvés: {}", results.size());
+        return results;
     }
 
     /**
@@ -0,0 +1,40 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.CvProfile;
+import com.example.backend.dto.JobResult;
+
+import java.util.List;
+
+/**
+ * Suivi de la progression d'une recherche d'emploi (file de traitement, flux de progression).
+ * Les résultats intermédiaires sont transmis dès que leur étape se termine.
+ * Une exception levée par le listener interrompt la recherche (client parti, par exemple).
+ */
+@FunctionalInterface
+public interface JobResearchListener {
+
+    JobResearchListener NONE = stage -> { };
+
+    /**
+     * Appelé au début de chaque étape
+     */
+    void onStage(JobResearchStage stage);
+
+    /**
+     * Profil extrait du CV, à la fin de l'étape d'extraction
+     */
+    default void onProfile(CvProfile profile) {
+    }
+
+    /**
+     * Requête Google générée, à la fin de l'étape de génération
+     */
+    default void onQuery(String googleQuery) {
+    }
+
+    /**
+     * Offres trouvées, à la fin de la recherche Google
+     */
+    default void onResults(List<JobResult> jobResults) {
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.CvProfile;
+import com.example.backend.dto.JobResearchJobStatus;
+import com.example.backend.dto.JobResearchResponse;
+import com.example.backend.dto.JobResult;
+import com.example.backend.model.JobResearchJob;
+import com.example.backend.model.JobResearchJob.Statut;
+import com.example.backend.repository.JobResearchJobRepository;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.DeadlineExceededException;
+import com.example.backend.upstream.UpstreamUnavailableException;
+import com.example.backend.utils.StoredCvFile;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * File d'attente des recherches d'emploi, stockée dans Postgres.
+ * La requête HTTP ne fait qu'enregistrer le CV ; les workers de chaque instance
+ * prennent les recherches en attente avec SELECT ... FOR UPDATE SKIP LOCKED,
+ * ce qui permet à plusieurs instances du backend de se partager la file.
+ * Un worker signale chaque étape (heartbeat) : une recherche dont le worker
+ * ne donne plus signe de vie depuis lease-seconds est remise en attente.
+ */
+@Service
+public class JobResearchQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobResearchQueue.class);
+
+    @Autowired
+    private JobResearchJobRepository repository;
+
+    @Autowired
+    private JobResearchService jobResearchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("jobResearchExecutor")
+    private ExecutorService executor;
+
+    // Recherches traitées en même temps par cette instance (0 : l'instance ne fait qu'enregistrer)
+    @Value("${job.research.queue.workers:4}")
+    private int workers;
+
+    @Value("${job.research.queue.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    // Doit rester supérieur à deadline-ms, sinon une recherche active pourrait être reprise
+    @Value("${job.research.queue.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${job.research.queue.max-attempts:2}")
+    private int maxAttempts;
+
+    @Value("${job.research.queue.deadline-ms:120000}")
+    private long deadlineMs;
+
+    @Value("${job.research.queue.retention-hours:24}")
+    private long retentionHours;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String workerId = System.getenv().getOrDefault("HOSTNAME", "backend")
+        + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-research-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TransactionTemplate transactionTemplate;
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        slots = new Semaphore(Math.max(0, workers));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::recoverAndPurge, 0, 1, TimeUnit.MINUTES);
+        if (workers <= 0) {
+            logger.info("File des recherches d'emploi : aucun worker sur cette instance");
+            return;
+        }
+        logger.info("File des recherches d'emploi : {} workers ({})", workers, workerId);
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enregistre une recherche en attente et retourne son identifiant
+     */
+    public UUID submit(MultipartFile file, String location, Boolean includeRemote, Integer maxResults) throws Exception {
+        JobResearchJob job = repository.save(new JobResearchJob(
+            file.getOriginalFilename(), file.getContentType(), file.getBytes(), location, includeRemote, maxResults));
+        logger.info("Recherche d'emploi {} mise en file d'attente ({})", job.getId(), file.getOriginalFilename());
+        if (workers > 0) {
+            // Réveil immédiat plutôt qu'au prochain intervalle
+            scheduler.execute(this::poll);
+        }
+        return job.getId();
+    }
+
+    /**
+     * État d'une recherche, avec le résultat une fois terminée
+     */
+    public Optional<JobResearchJobStatus> find(UUID id) {
+        return repository.findById(id).map(this::toStatus);
+    }
+
+    /**
+     * Prend autant de recherches en attente qu'il y a de workers libres
+     */
+    private void poll() {
+        try {
+            int free = slots.availablePermits();
+            if (free == 0) {
+                return;
+            }
+            List<JobResearchJob> claimed = transactionTemplate.execute(status -> claim(free));
+            for (JobResearchJob job : claimed) {
+                slots.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        process(job);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("Lecture de la file des recherches impossible: {}", e.getMessage());
+        }
+    }
+
+    private List<JobResearchJob> claim(int limit) {
+        List<JobResearchJob> jobs = repository.lockPending(limit);
+        LocalDateTime now = LocalDateTime.now();
+        for (JobResearchJob job : jobs) {
+            job.setStatut(Statut.EN_COURS);
+            job.setEtape(null);
+            job.setWorkerId(workerId);
+            job.setTentatives(job.getTentatives() + 1);
+            job.setDateDebut(now);
+            job.setDateHeartbeat(now);
+        }
+        return repository.saveAll(jobs);
+    }
+
+    private void process(JobResearchJob job) {
+        UUID id = job.getId();
+        logger.info("Traitement de la recherche {} (tentative {})", id, job.getTentatives());
+        StoredCvFile file = new StoredCvFile(job.getNomFichier(), job.getTypeContenu(), job.getContenuFichier());
+        Deadline deadline = Deadline.after(Duration.ofMillis(deadlineMs));
+        JobResearchListener listener = stage -> repository.updateStage(id, stage.name(), LocalDateTime.now());
+        // Recherches enregistrées avant l'ajout de la colonne : valeur par défaut
+        int maxResults = job.getMaxResultats() != null ? job.getMaxResultats() : JobResearchService.DEFAULT_MAX_RESULTS;
+
+        try {
+            JobResearchResponse response = jobResearchService.analyzeAndSearch(
+                file, job.getLocalisation(), job.getInclureRemote(), maxResults, deadline, listener);
+            finish(id, current -> {
+                current.setStatut(Statut.TERMINE);
+                current.setRequeteGoogle(response.getGoogleQuery());
+                current.setProfilJson(objectMapper.valueToTree(response.getExtractedProfile()));
+                current.setResultatsJson(objectMapper.valueToTree(response.getJobResults()));
+            });
+        } catch (Exception e) {
+            boolean retry = UpstreamUnavailableException.findIn(e) != null && job.getTentatives() < maxAttempts;
+            if (retry) {
+                // Fournisseur momentanément indisponible : la recherche repasse en attente
+                logger.warn("Recherche {} remise en attente: {}", id, e.getMessage());
+                finish(id, current -> {
+                    current.setStatut(Statut.EN_ATTENTE);
+                    current.setEtape(null);
+                    current.setWorkerId(null);
+                });
+                return;
+            }
+            logger.error("Échec de la recherche {}", id, e);
+            finish(id, current -> {
+                current.setStatut(Statut.ECHEC);
+                current.setMessageErreur(errorMessage(e));
+            });
+        }
+    }
+
+    /**
+     * Enregistre l'issue d'une recherche, si elle appartient toujours à cette instance
+     */
+    private void finish(UUID id, Consumer<JobResearchJob> update) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.findById(id).ifPresent(current -> {
+                if (current.getStatut() != Statut.EN_COURS || !workerId.equals(current.getWorkerId())) {
+                    logger.warn("Recherche {} reprise par un autre worker, résultat ignoré", id);
+                    return;
+                }
+                update.accept(current);
+                if (current.getStatut() != Statut.EN_ATTENTE) {
+                    current.setContenuFichier(null);
+                    current.setDateFin(LocalDateTime.now());
+                }
+                repository.save(current);
+            }));
+        } catch (Exception e) {
+            logger.error("Enregistrement de l'issue de la recherche {} impossible", id, e);
+        }
+    }
+
+    private String errorMessage(Exception e) {
+        DeadlineExceededException exceeded = DeadlineExceededException.findIn(e);
+        if (exceeded != null) {
+            return "La recherche a dépassé le délai autorisé (étape : " + exceeded.getStage() + ")";
+        }
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    /**
+     * Reprend les recherches abandonnées par un worker arrêté et purge les anciennes
+     */
+    private void recoverAndPurge() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime leaseLimit = now.minusSeconds(leaseSeconds);
+            int requeued = repository.requeueStale(leaseLimit, maxAttempts, Statut.EN_ATTENTE, Statut.EN_COURS);
+            int failed = repository.failStale(leaseLimit, maxAttempts, now, Statut.ECHEC, Statut.EN_COURS);
+            int purged = repository.deleteFinishedBefore(List.of(Statut.TERMINE, Statut.ECHEC), now.minusHours(retentionHours));
+            if (requeued + failed + purged > 0) {
+                logger.info("File des recherches : {} reprises, {} abandonnées, {} purgées", requeued, failed, purged);
+            }
+        } catch (Exception e) {
+            logger.warn("Maintenance de la file des recherches impossible: {}", e.getMessage());
+        }
+    }
+
+    private JobResearchJobStatus toStatus(JobResearchJob job) {
+        JobResearchJobStatus status = new JobResearchJobStatus();
+        status.setJobId(job.getId());
+        status.setStatus(job.getStatut().name());
+        status.setAttempts(job.getTentatives());
+        status.setCreatedAt(job.getDateCreation());
+        status.setStartedAt(job.getDateDebut());
+        status.setFinishedAt(job.getDateFin());
+        status.setError(job.getMessageErreur());
+
+        if (job.getEtape() != null) {
+            JobResearchStage stage = JobResearchStage.valueOf(job.getEtape());
+            status.setStage(stage.getLabel());
+            status.setStageNumber(stage.getNumber());
+        }
+
+        if (job.getStatut() == Statut.TERMINE) {
+            JobResearchResponse result = new JobResearchResponse(
+                job.getRequeteGoogle(),
+                objectMapper.convertValue(job.getProfilJson(), CvProfile.class),
+                objectMapper.convertValue(job.getResultatsJson(), new TypeReference<List<JobResult>>() { }));
+            result.setSearchTimestamp(job.getDateFin());
+            status.setResult(result);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Les recherches en cours seront reprises par une autre instance à l'expiration du bail
+        scheduler.shutdownNow();
+    }
+}
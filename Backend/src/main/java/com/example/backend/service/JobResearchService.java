@@ -3,16 +3,21 @@ package com.example.backend.service;
 import com.example.backend.dto.CvProfile;
 import com.example.backend.dto.JobResult;
 import com.example.backend.dto.JobResearchResponse;
+import com.example.backend.service.GeminiCvExtractionService.CvExtractionWithQuery;
 import com.example.backend.service.GeminiCvExtractionService.CvStructuredData;
 import com.example.backend.service.GeminiCvExtractionService.SkillCategory;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.DeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service orchestrant la recherche d'emploi basée sur un CV
@@ -22,6 +27,9 @@ public class JobResearchService {
 
     private static final Logger logger = LoggerFactory.getLogger(JobResearchService.class);
 
+    // Nombre de résultats par défaut, comme JobResearchRequest.maxResults
+    public static final int DEFAULT_MAX_RESULTS = 10;
+
     @Autowired
     private GeminiCvExtractionService geminiCvExtractionService;
 
@@ -31,6 +39,10 @@ public class JobResearchService {
     @Autowired
     private GoogleSearchService googleSearchService;
 
+    // Mode fusionné : Gemini retourne le profil et la requête Google en un seul appel (pas d'appel OpenAI)
+    @Value("${job.research.fused-query.enabled:false}")
+    private boolean fusedQueryEnabled;
+
     /**
      * Méthode principale orchestrant tout le workflow de recherche d'emploi
      * 
@@ -40,23 +52,65 @@ public class JobResearchService {
      * @return La réponse complète avec requête, profil et résultats
      */
     public JobResearchResponse analyzeAndSearch(MultipartFile cv, String location, Boolean includeRemote) throws Exception {
+        return analyzeAndSearch(cv, location, includeRemote, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #analyzeAndSearch(MultipartFile, String, Boolean)}, avec une échéance globale :
+     * chaque étape ne dispose que du temps restant et la recherche échoue dès qu'il est épuisé
+     */
+    public JobResearchResponse analyzeAndSearch(MultipartFile cv, String location, Boolean includeRemote,
+                                                Deadline deadline) throws Exception {
+        return analyzeAndSearch(cv, location, includeRemote, deadline, JobResearchListener.NONE);
+    }
+
+    /**
+     * Comme {@link #analyzeAndSearch(MultipartFile, String, Boolean, Deadline)}, en signalant le début de chaque étape
+     */
+    public JobResearchResponse analyzeAndSearch(MultipartFile cv, String location, Boolean includeRemote,
+                                                Deadline deadline, JobResearchListener listener) throws Exception {
+        return analyzeAndSearch(cv, location, includeRemote, DEFAULT_MAX_RESULTS, deadline, listener);
+    }
+
+    /**
+     * Comme {@link #analyzeAndSearch(MultipartFile, String, Boolean, Deadline, JobResearchListener)},
+     * avec le nombre de résultats Google souhaités (jusqu'à 100)
+     */
+    public JobResearchResponse analyzeAndSearch(MultipartFile cv, String location, Boolean includeRemote, int maxResults,
+                                                Deadline deadline, JobResearchListener listener) throws Exception {
         logger.info("===== DÉBUT RECHERCHE D'EMPLOI =====");
-        logger.info("Fichier CV: {}, Location: {}, Remote: {}", cv.getOriginalFilename(), location, includeRemote);
+        logger.info("Fichier CV: {}, Location: {}, Remote: {}, Max résultats: {}",
+            cv.getOriginalFilename(), location, includeRemote, maxResults);
 
         // Étape 1: Extraire le profil du CV avec Gemini
         logger.info("Étape 1/4: Extraction du profil CV avec Gemini...");
-        CvProfile profile = extractProfileFromCv(cv);
+        startStage(JobResearchStage.EXTRACTION, deadline, listener);
+        CvExtractionWithQuery extraction = fusedQueryEnabled
+            ? geminiCvExtractionService.extractCvDataWithQuery(cv, location, includeRemote, deadline)
+            : new CvExtractionWithQuery(geminiCvExtractionService.extractCvData(cv, CvExtractionProfile.JOB_SEARCH, deadline), null);
+        CvProfile profile = toCvProfile(extraction.getCvData());
+        listener.onProfile(profile);
         
-        // Étape 2: Générer la requête Google optimisée avec OpenAI
-        logger.info("Étape 2/4: Génération de la requête Google avec OpenAI...");
-        String googleQuery = openAIQueryGeneratorService.generateJobSearchQuery(profile, location, includeRemote);
+        // Étape 2: Générer la requête Google optimisée avec OpenAI (sauf si Gemini l'a déjà fournie)
+        startStage(JobResearchStage.QUERY, deadline, listener);
+        String googleQuery = extraction.getSearchQuery();
+        if (googleQuery != null) {
+            logger.info("Étape 2/4: Requête Google déjà générée par Gemini");
+        } else {
+            logger.info("Étape 2/4: Génération de la requête Google avec OpenAI...");
+            googleQuery = openAIQueryGeneratorService.generateJobSearchQuery(profile, location, includeRemote, deadline);
+        }
+        listener.onQuery(googleQuery);
         
         // Étape 3: Effectuer la recherche Google
         logger.info("Étape 3/4: Exécution de la recherche Google...");
-        List<JobResult> jobResults = googleSearchService.searchJobs(googleQuery, 10);
+        startStage(JobResearchStage.SEARCH, deadline, listener);
+        List<JobResult> jobResults = googleSearchService.searchJobs(googleQuery, maxResults, deadline);
+        listener.onResults(jobResults);
         
         // Étape 4: Construire et retourner la réponse
         logger.info("Étape 4/4: Construction de la réponse...");
+        listener.onStage(JobResearchStage.RESPONSE);
         JobResearchResponse response = new JobResearchResponse(googleQuery, profile, jobResults);
         
         logger.info("===== RECHERCHE TERMINÉE =====");
@@ -65,6 +119,97 @@ public class JobResearchService {
         return response;
     }
 
+    /**
+     * Variante non bloquante de {@link #analyzeAndSearch(MultipartFile, String, Boolean)} :
+     * chaque étape est chaînée sur la précédente sans occuper de thread pendant les appels externes.
+     */
+    public CompletableFuture<JobResearchResponse> analyzeAndSearchAsync(MultipartFile cv, String location, Boolean includeRemote) {
+        return analyzeAndSearchAsync(cv, location, includeRemote, Deadline.none());
+    }
+
+    /**
+     * Variante non bloquante de {@link #analyzeAndSearch(MultipartFile, String, Boolean, Deadline)}
+     */
+    public CompletableFuture<JobResearchResponse> analyzeAndSearchAsync(MultipartFile cv, String location, Boolean includeRemote,
+                                                                      Deadline deadline) {
+        return analyzeAndSearchAsync(cv, location, includeRemote, deadline, JobResearchListener.NONE);
+    }
+
+    /**
+     * Variante non bloquante de {@link #analyzeAndSearch(MultipartFile, String, Boolean, Deadline, JobResearchListener)}
+     */
+    public CompletableFuture<JobResearchResponse> analyzeAndSearchAsync(MultipartFile cv, String location, Boolean includeRemote,
+                                                                      Deadline deadline, JobResearchListener listener) {
+        return analyzeAndSearchAsync(cv, location, includeRemote, DEFAULT_MAX_RESULTS, deadline, listener);
+    }
+
+    /**
+     * Variante non bloquante de {@link #analyzeAndSearch(MultipartFile, String, Boolean, int, Deadline, JobResearchListener)}
+     */
+    public CompletableFuture<JobResearchResponse> analyzeAndSearchAsync(MultipartFile cv, String location, Boolean includeRemote,
+                                                                      int maxResults, Deadline deadline,
+                                                                      JobResearchListener listener) {
+        logger.info("===== DÉBUT RECHERCHE D'EMPLOI (async) =====");
+        logger.info("Fichier CV: {}, Location: {}, Remote: {}, Max résultats: {}",
+            cv.getOriginalFilename(), location, includeRemote, maxResults);
+
+        logger.info("Étape 1/4: Extraction du profil CV avec Gemini...");
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(deadline.exceeded(JobResearchStage.EXTRACTION.getLabel()));
+        }
+        listener.onStage(JobResearchStage.EXTRACTION);
+        CompletableFuture<CvExtractionWithQuery> extraction = fusedQueryEnabled
+            ? geminiCvExtractionService.extractCvDataWithQueryAsync(cv, location, includeRemote, deadline)
+            : geminiCvExtractionService.extractCvDataAsync(cv, CvExtractionProfile.JOB_SEARCH, deadline)
+                .thenApply(cvData -> new CvExtractionWithQuery(cvData, null));
+        return extraction
+            .thenCompose(extracted -> {
+                CvProfile profile = toCvProfile(extracted.getCvData());
+                listener.onProfile(profile);
+                if (deadline.isExpired()) {
+                    return CompletableFuture.failedFuture(deadline.exceeded(JobResearchStage.QUERY.getLabel()));
+                }
+                listener.onStage(JobResearchStage.QUERY);
+                CompletableFuture<String> query;
+                if (extracted.getSearchQuery() != null) {
+                    logger.info("Étape 2/4: Requête Google déjà générée par Gemini");
+                    query = CompletableFuture.completedFuture(extracted.getSearchQuery());
+                } else {
+                    logger.info("Étape 2/4: Génération de la requête Google avec OpenAI...");
+                    query = openAIQueryGeneratorService.generateJobSearchQueryAsync(profile, location, includeRemote, deadline);
+                }
+                return query
+                    .thenCompose(googleQuery -> {
+                        listener.onQuery(googleQuery);
+                        logger.info("Étape 3/4: Exécution de la recherche Google...");
+                        if (deadline.isExpired()) {
+                            return CompletableFuture.failedFuture(deadline.exceeded(JobResearchStage.SEARCH.getLabel()));
+                        }
+                        listener.onStage(JobResearchStage.SEARCH);
+                        return googleSearchService.searchJobsAsync(googleQuery, maxResults, deadline)
+                            .thenApply(jobResults -> {
+                                listener.onResults(jobResults);
+                                logger.info("Étape 4/4: Construction de la réponse...");
+                                listener.onStage(JobResearchStage.RESPONSE);
+                                JobResearchResponse response = new JobResearchResponse(googleQuery, profile, jobResults);
+
+                                logger.info("===== RECHERCHE TERMINÉE =====");
+                                logger.info("Résultats trouvés: {}", jobResults.size());
+                                return response;
+                            });
+                    });
+            });
+    }
+
+    /**
+     * Vérifie l'échéance puis signale le début de l'étape
+     */
+    private void startStage(JobResearchStage stage, Deadline deadline, JobResearchListener listener)
+            throws DeadlineExceededException {
+        deadline.check(stage.getLabel());
+        listener.onStage(stage);
+    }
+
     /**
      * Extrait le profil du CV en utilisant le service Gemini existant
      * 
@@ -74,10 +219,16 @@ public class JobResearchService {
     public CvProfile extractProfileFromCv(MultipartFile cv) throws Exception {
         logger.info("Extraction du profil depuis le CV...");
         
-        // Utiliser le service existant
-        CvStructuredData cvData = geminiCvExtractionService.extractCvData(cv);
+        // Seules les sections lues par toCvProfile sont demandées
+        CvStructuredData cvData = geminiCvExtractionService.extractCvData(cv, CvExtractionProfile.JOB_SEARCH, Deadline.none());
         
-        // Convertir CvStructuredData en CvProfile
+        return toCvProfile(cvData);
+    }
+
+    /**
+     * Convertit les données structurées extraites par Gemini en CvProfile
+     */
+    private CvProfile toCvProfile(CvStructuredData cvData) {
         CvProfile profile = new CvProfile();
         
         // Informations personnelles
@@ -0,0 +1,28 @@
+package com.example.backend.service;
+
+/**
+ * Étapes d'une recherche d'emploi, dans l'ordre d'exécution
+ */
+public enum JobResearchStage {
+    EXTRACTION("extraction du CV"),
+    QUERY("génération de la requête"),
+    SEARCH("recherche Google"),
+    RESPONSE("construction de la réponse");
+
+    private final String label;
+
+    JobResearchStage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Numéro de l'étape (1 à 4), pour les logs et l'affichage de la progression
+     */
+    public int getNumber() {
+        return ordinal() + 1;
+    }
+}
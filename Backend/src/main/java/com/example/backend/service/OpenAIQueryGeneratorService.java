@@ -1,23 +1,32 @@
 package com.example.backend.service;
 
+import com.example.backend.cache.CacheRegistry;
+import com.example.backend.cache.TtlCache;
 import com.example.backend.dto.CvProfile;
+import com.example.backend.upstream.Deadline;
+import com.example.backend.upstream.Futures;
+import com.example.backend.upstream.Upstream;
+import com.example.backend.upstream.UpstreamHttpClient;
+import com.example.backend.upstream.UpstreamResponse;
+import com.example.backend.utils.HashUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service pour générer des requêtes Google optimisées via OpenAI
@@ -27,11 +36,40 @@ public class OpenAIQueryGeneratorService {
 
     private static final Logger logger = LoggerFactory.getLogger(OpenAIQueryGeneratorService.class);
 
+    private static final String OPENAI_URL = "https://api.openai.com/v1/chat/completions";
+
+    private static final String QUERY_MODEL = "gpt-4o-mini";
+
     @Value("${openai.api.key}")
     private String openaiApiKey;
 
+    @Value("${job.query.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${job.query.cache.ttl-minutes:720}")
+    private long cacheTtlMinutes;
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Requêtes déjà générées, par empreinte des entrées du prompt
+    private TtlCache<String, String> queryCache;
+
+    // Version du modèle et du gabarit de prompt : le modifier invalide les anciennes entrées
+    private String promptVersion;
+
+    @PostConstruct
+    public void initCache() {
+        queryCache = cacheRegistry.register("openai-job-query", cacheMaxEntries, Duration.ofMinutes(cacheTtlMinutes));
+        promptVersion = HashUtils.sha256Hex(QUERY_MODEL + buildPrompt(new CvProfile(), "", true) + buildPrompt(new CvProfile(), "", false))
+            .substring(0, 12);
+    }
+
     /**
      * Génère une requête Google optimisée pour la recherche d'emploi basée sur un
      * CV
@@ -42,16 +80,105 @@ public class OpenAIQueryGeneratorService {
      * @return Une requête Google optimisée avec opérateurs avancés
      */
     public String generateJobSearchQuery(CvProfile profile, String location, Boolean includeRemote) throws Exception {
+        return generateJobSearchQuery(profile, location, includeRemote, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #generateJobSearchQuery(CvProfile, String, Boolean)}, dans la limite de l'échéance de la requête
+     */
+    public String generateJobSearchQuery(CvProfile profile, String location, Boolean includeRemote, Deadline deadline) throws Exception {
         logger.info("===== Génération de requête Google avec OpenAI =====");
         logger.info("Profil: {}, Location: {}, Remote: {}", profile.getName(), location, includeRemote);
 
+        String fingerprint = promptFingerprint(profile, location, includeRemote);
+        String cached = queryCache.get(fingerprint);
+        if (cached != null) {
+            logger.info("Requête trouvée en cache: {}", cached);
+            return cached;
+        }
+
         String prompt = buildPrompt(profile, location, includeRemote);
-        String query = callOpenAI(prompt);
+        String query = callOpenAI(prompt, deadline);
+        queryCache.put(fingerprint, query);
 
         logger.info("Requête générée: {}", query);
         return query;
     }
 
+    /**
+     * Variante non bloquante de {@link #generateJobSearchQuery(CvProfile, String, Boolean)}
+     */
+    public CompletableFuture<String> generateJobSearchQueryAsync(CvProfile profile, String location, Boolean includeRemote) {
+        return generateJobSearchQueryAsync(profile, location, includeRemote, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #generateJobSearchQueryAsync(CvProfile, String, Boolean)}, dans la limite de l'échéance de la requête
+     */
+    public CompletableFuture<String> generateJobSearchQueryAsync(CvProfile profile, String location, Boolean includeRemote,
+                                                                 Deadline deadline) {
+        logger.info("===== Génération de requête Google avec OpenAI (async) =====");
+        logger.info("Profil: {}, Location: {}, Remote: {}", profile.getName(), location, includeRemote);
+
+        String fingerprint = promptFingerprint(profile, location, includeRemote);
+        String cached = queryCache.get(fingerprint);
+        if (cached != null) {
+            logger.info("Requête trouvée en cache: {}", cached);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        try {
+            SimpleHttpRequest request = SimpleRequestBuilder.post(OPENAI_URL)
+                .setHeader("Authorization", "Bearer " + openaiApiKey)
+                .setBody(buildOpenAIRequestJson(buildPrompt(profile, location, includeRemote)), ContentType.APPLICATION_JSON)
+                .build();
+
+            return upstreamHttpClient.executeAsync(Upstream.OPENAI, request, deadline)
+                .thenApply(Futures.unchecked(this::parseOpenAIResponse))
+                .thenApply(query -> {
+                    queryCache.put(fingerprint, query);
+                    logger.info("Requête générée: {}", query);
+                    return query;
+                });
+        } catch (Exception e) {
+            logger.error("Erreur lors de la préparation de la requête OpenAI", e);
+            return CompletableFuture.failedFuture(new Exception("Erreur génération requête avec OpenAI: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Empreinte stable des entrées du prompt : champs normalisés (casse, espaces),
+     * compétences triées et dédoublonnées, localisation, remote et version du prompt.
+     * Le nom est exclu : il n'influence pas la requête générée.
+     */
+    private String promptFingerprint(CvProfile profile, String location, Boolean includeRemote) {
+        List<String> skills = new ArrayList<>();
+        if (profile.getSkills() != null) {
+            profile.getSkills().stream()
+                .filter(Objects::nonNull)
+                .map(this::normalizeForFingerprint)
+                .filter(skill -> !skill.isEmpty())
+                .distinct()
+                .sorted()
+                .forEach(skills::add);
+        }
+
+        String inputs = String.join("\n",
+            promptVersion,
+            normalizeForFingerprint(profile.getTitle()),
+            normalizeForFingerprint(profile.getExperience()),
+            normalizeForFingerprint(profile.getEducation()),
+            String.join(",", skills),
+            String.valueOf(profile.getYearsOfExperience()),
+            normalizeForFingerprint(location),
+            String.valueOf(includeRemote));
+        return HashUtils.sha256Hex(inputs);
+    }
+
+    private String normalizeForFingerprint(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Construit le prompt pour OpenAI
      */
@@ -107,63 +234,71 @@ public class OpenAIQueryGeneratorService {
     /**
      * Appelle l'API OpenAI
      */
-    private String callOpenAI(String prompt) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-
-            // Construire le corps de la requête OpenAI
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "gpt-4o-mini");
-            requestBody.put("temperature", 0.3);
-            requestBody.put("max_tokens", 200);
+    private String callOpenAI(String prompt, Deadline deadline) throws Exception {
+        try {
+            String jsonRequest = buildOpenAIRequestJson(prompt);
 
-            List<Map<String, String>> messages = new ArrayList<>();
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages.add(message);
-
-            requestBody.put("messages", messages);
-
-            String jsonRequest = objectMapper.writeValueAsString(requestBody);
-
-            HttpPost httpPost = new HttpPost("https://api.openai.com/v1/chat/completions");
+            HttpPost httpPost = new HttpPost(OPENAI_URL);
             httpPost.setHeader("Content-Type", "application/json");
             httpPost.setHeader("Authorization", "Bearer " + openaiApiKey);
             httpPost.setEntity(new StringEntity(jsonRequest, StandardCharsets.UTF_8));
 
             logger.info("Envoi de la requête à OpenAI...");
 
-            try (CloseableHttpResponse httpResponse = httpClient.execute(httpPost)) {
-                int statusCode = httpResponse.getCode();
+            UpstreamResponse httpResponse = upstreamHttpClient.execute(Upstream.OPENAI, httpPost, deadline);
+            return parseOpenAIResponse(httpResponse);
+
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'appel à OpenAI", e);
+            throw new Exception("Erreur génération requête avec OpenAI: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Construit le corps de la requête OpenAI
+     */
+    private String buildOpenAIRequestJson(String prompt) throws Exception {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", QUERY_MODEL);
+        requestBody.put("temperature", 0.3);
+        requestBody.put("max_tokens", 200);
 
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(httpResponse.getEntity().getContent(), StandardCharsets.UTF_8));
-                String responseStr = reader.lines().collect(Collectors.joining("\n"));
+        List<Map<String, String>> messages = new ArrayList<>();
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        messages.add(message);
 
-                logger.info("Réponse OpenAI reçue (status: {})", statusCode);
+        requestBody.put("messages", messages);
 
-                if (statusCode != 200) {
-                    logger.error("Erreur API OpenAI: {}", responseStr);
-                    throw new Exception("Erreur API OpenAI: " + statusCode);
-                }
+        return objectMapper.writeValueAsString(requestBody);
+    }
 
-                // Parser la réponse OpenAI
-                JsonNode rootNode = objectMapper.readTree(responseStr);
-                String query = rootNode.path("choices").get(0)
-                        .path("message").path("content").asText();
+    /**
+     * Vérifie le statut de la réponse OpenAI et extrait la requête générée
+     */
+    private String parseOpenAIResponse(UpstreamResponse httpResponse) throws Exception {
+        int statusCode = httpResponse.getStatusCode();
+        String responseStr = httpResponse.getBody();
 
-                // Nettoyer la requête (enlever les guillemets, espaces inutiles)
-                query = query.trim();
-                if (query.startsWith("\"") && query.endsWith("\"")) {
-                    query = query.substring(1, query.length() - 1);
-                }
+        logger.info("Réponse OpenAI reçue (status: {})", statusCode);
 
-                return query;
-            }
+        if (statusCode != 200) {
+            logger.error("Erreur API OpenAI: {}", responseStr);
+            throw new Exception("Erreur API OpenAI: " + statusCode);
+        }
 
-        } catch (Exception e) {
-            logger.error("Erreur lors de l'appel à OpenAI", e);
-            throw new Exception("Erreur génération requête avec OpenAI: " + e.getMessage(), e);
+        // Parser la réponse OpenAI
+        JsonNode rootNode = objectMapper.readTree(responseStr);
+        String query = rootNode.path("choices").get(0)
+                .path("message").path("content").asText();
+
+        // Nettoyer la requête (enlever les guillemets, espaces inutiles)
+        query = query.trim();
+        if (query.startsWith("\"") && query.endsWith("\"")) {
+            query = query.substring(1, query.length() - 1);
         }
+
+        return query;
     }
 }
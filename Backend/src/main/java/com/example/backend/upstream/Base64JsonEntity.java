@@ -0,0 +1,230 @@
+package com.example.backend.upstream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Corps JSON contenant un fichier encodé en base64, écrit en flux vers la connexion :
+ * début du JSON, fichier encodé au fil de sa lecture, fin du JSON.
+ * Le fichier n'est jamais chargé en mémoire, quelle que soit sa taille ; la longueur
+ * est connue à l'avance, la requête part donc avec un Content-Length et non en chunked.
+ * Le fichier est relu à chaque envoi, ce qui permet les nouvelles tentatives.
+ */
+public class Base64JsonEntity extends AbstractHttpEntity {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+    private final InputStreamSource source;
+    private final long sourceLength;
+
+    /**
+     * @param prefix JSON précédant le contenu encodé, guillemet ouvrant compris
+     * @param suffix JSON suivant le contenu encodé, guillemet fermant compris
+     * @param source Fichier à encoder, relu à chaque envoi
+     * @param sourceLength Taille du fichier en octets
+     */
+    public Base64JsonEntity(String prefix, String suffix, InputStreamSource source, long sourceLength) {
+        super(ContentType.APPLICATION_JSON, null);
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+        this.source = source;
+        this.sourceLength = sourceLength;
+    }
+
+    @Override
+    public long getContentLength() {
+        // base64 avec padding : 4 caractères par groupe de 3 octets entamé
+        return prefix.length + 4 * ((sourceLength + 2) / 3) + suffix.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(prefix);
+        try (InputStream input = source.getInputStream();
+             OutputStream encoder = Base64.getEncoder().wrap(new NonClosingOutputStream(output))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long total = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                encoder.write(buffer, 0, read);
+                total += read;
+            }
+            if (total != sourceLength) {
+                throw new IOException("Taille du fichier modifiée pendant l'envoi (" + total + " au lieu de " + sourceLength + " octets)");
+            }
+        }
+        output.write(suffix);
+        output.flush();
+    }
+
+    /**
+     * Corps complet en un seul tableau de la taille exacte, pour les clients qui exigent
+     * un corps en mémoire (client asynchrone)
+     */
+    public byte[] toByteArray() throws IOException {
+        long length = getContentLength();
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corps de requête trop volumineux: " + length + " octets");
+        }
+        ArrayOutputStream output = new ArrayOutputStream((int) length);
+        writeTo(output);
+        if (output.position != output.array.length) {
+            throw new IOException("Corps de requête incomplet (" + output.position + " au lieu de " + length + " octets)");
+        }
+        return output.array;
+    }
+
+    /**
+     * Même corps qu'avec writeTo, en lecture (intercepteurs, EntityUtils...) : encodé à la volée,
+     * sans charger le fichier. Un nouveau flux est ouvert sur le fichier à chaque appel.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        return new SequenceInputStream(Collections.enumeration(List.of(
+            new ByteArrayInputStream(prefix),
+            new Base64EncodingInputStream(source.getInputStream(), sourceLength),
+            new ByteArrayInputStream(suffix))));
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // Aucune ressource ouverte en dehors de writeTo
+    }
+
+    /**
+     * Fermer l'encodeur écrit le padding final sans fermer la connexion
+     */
+    private static class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream output;
+
+        NonClosingOutputStream(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            output.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            output.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            // La connexion reste ouverte pour la fin du JSON
+        }
+    }
+
+    /**
+     * Tableau de taille fixe : un fichier plus long que prévu échoue proprement au lieu de déborder
+     */
+    private static class ArrayOutputStream extends OutputStream {
+
+        private final byte[] array;
+        private int position;
+
+        ArrayOutputStream(int size) {
+            this.array = new byte[size];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > array.length - position) {
+                throw new IOException("Taille du fichier modifiée pendant l'encodage (corps de plus de " + array.length + " octets)");
+            }
+            System.arraycopy(b, off, array, position, len);
+            position += len;
+        }
+    }
+
+    /**
+     * Encode en base64 le flux lu, par blocs d'un multiple de 3 octets (padding uniquement en fin de flux)
+     */
+    private static class Base64EncodingInputStream extends InputStream {
+
+        private final InputStream input;
+        private final long expectedLength;
+        private final byte[] raw = new byte[3 * (BUFFER_SIZE / 3)];
+        private byte[] encoded = new byte[0];
+        private int position;
+        private long total;
+        private boolean finished;
+
+        Base64EncodingInputStream(InputStream input, long expectedLength) {
+            this.input = input;
+            this.expectedLength = expectedLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position >= encoded.length) {
+                if (finished) {
+                    return -1;
+                }
+                fill();
+            }
+            int count = Math.min(len, encoded.length - position);
+            System.arraycopy(encoded, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        private void fill() throws IOException {
+            int read = input.readNBytes(raw, 0, raw.length);
+            total += read;
+            if (total > expectedLength || (read < raw.length && total != expectedLength)) {
+                throw new IOException("Taille du fichier modifiée pendant l'envoi (" + total + " octets lus, "
+                    + expectedLength + " attendus)");
+            }
+            finished = read < raw.length;
+            encoded = Base64.getEncoder().encode(read == raw.length ? raw : Arrays.copyOf(raw, read));
+            position = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.backend.upstream;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compteur de quota journalier, remis à zéro à minuit dans le fuseau du fournisseur
+ * (Google Custom Search : heure du Pacifique). Une limite de 0 désactive le quota.
+ */
+public class DailyQuota {
+
+    private final long limit;
+    private final ZoneId zone;
+
+    private LocalDate day;
+    private long used;
+    private long rejected;
+
+    public DailyQuota(long limit, ZoneId zone) {
+        this.limit = limit;
+        this.zone = zone;
+        this.day = LocalDate.now(zone);
+    }
+
+    public synchronized boolean tryConsume() {
+        rollover();
+        if (limit > 0 && used >= limit) {
+            rejected++;
+            return false;
+        }
+        used++;
+        return true;
+    }
+
+    public synchronized void refund() {
+        rollover();
+        used = Math.max(0, used - 1);
+    }
+
+    public long millisUntilReset() {
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        ZonedDateTime nextReset = now.toLocalDate().plusDays(1).atStartOfDay(zone);
+        return Duration.between(now, nextReset).toMillis();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        rollover();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", limit);
+        stats.put("used", used);
+        stats.put("remaining", limit > 0 ? Math.max(0, limit - used) : -1);
+        stats.put("rejected", rejected);
+        stats.put("resetsInSeconds", millisUntilReset() / 1000);
+        return stats;
+    }
+
+    private void rollover() {
+        LocalDate today = LocalDate.now(zone);
+        if (!today.equals(day)) {
+            day = today;
+            used = 0;
+        }
+    }
+}
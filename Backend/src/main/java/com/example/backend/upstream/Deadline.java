@@ -0,0 +1,62 @@
+package com.example.backend.upstream;
+
+import java.time.Duration;
+
+/**
+ * Échéance d'une requête, fixée par le controller et transmise à chaque étape :
+ * chaque appel externe ne dispose que du temps restant.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long expiresAtNanos;
+    private final boolean bounded;
+
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    /**
+     * Absence d'échéance : seuls les timeouts des clients HTTP s'appliquent
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * Temps restant en millisecondes (Long.MAX_VALUE sans échéance, 0 si dépassée)
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (expiresAtNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    /**
+     * Échoue si l'échéance est dépassée avant de commencer l'étape
+     */
+    public void check(String stage) throws DeadlineExceededException {
+        if (isExpired()) {
+            throw exceeded(stage);
+        }
+    }
+
+    public DeadlineExceededException exceeded(String stage) {
+        return new DeadlineExceededException(stage);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.backend.upstream;
+
+import java.io.IOException;
+
+/**
+ * Le budget de temps de la requête est épuisé : l'étape n'a pas été lancée ou a été interrompue.
+ * Jamais retentée.
+ */
+public class DeadlineExceededException extends IOException {
+
+    private final String stage;
+
+    public DeadlineExceededException(String stage) {
+        super("Délai de traitement dépassé (étape : " + stage + ")");
+        this.stage = stage;
+    }
+
+    public String getStage() { return stage; }
+
+    /**
+     * Cherche cette exception dans la chaîne des causes, null si absente
+     */
+    public static DeadlineExceededException findIn(Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof DeadlineExceededException exceeded) {
+                return exceeded;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.backend.upstream;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Utilitaires pour enchaîner des CompletableFuture avec des méthodes
+ * qui lèvent des exceptions contrôlées
+ */
+public final class Futures {
+
+    private Futures() {}
+
+    @FunctionalInterface
+    public interface CheckedFunction<T, R> {
+        R apply(T value) throws Exception;
+    }
+
+    /**
+     * Adapte une fonction à exception contrôlée pour thenApply/thenCompose
+     */
+    public static <T, R> Function<T, R> unchecked(CheckedFunction<T, R> function) {
+        return value -> {
+            try {
+                return function.apply(value);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    /**
+     * Retire les enveloppes CompletionException / ExecutionException
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+}
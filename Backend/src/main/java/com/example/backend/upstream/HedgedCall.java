@@ -0,0 +1,80 @@
+package com.example.backend.upstream;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Appel couvert (hedged request) : si la première requête n'a pas répondu après le délai
+ * de couverture, une seconde requête identique part. La première réponse exploitable gagne
+ * et l'autre échange est annulé. Si toutes échouent, le dernier résultat est retourné.
+ */
+class HedgedCall {
+
+    private final Object lock = new Object();
+    private final CompletableFuture<UpstreamResponse> result = new CompletableFuture<>();
+    private final List<CompletableFuture<UpstreamResponse>> attempts = new CopyOnWriteArrayList<>();
+    private final Predicate<UpstreamResponse> acceptable;
+
+    private int outstanding;
+
+    private HedgedCall(Predicate<UpstreamResponse> acceptable) {
+        this.acceptable = acceptable;
+        result.whenComplete((response, error) -> attempts.forEach(attempt -> attempt.cancel(true)));
+    }
+
+    static CompletableFuture<UpstreamResponse> start(Supplier<CompletableFuture<UpstreamResponse>> primary,
+                                                     Supplier<CompletableFuture<UpstreamResponse>> hedge,
+                                                     long hedgeDelayMillis,
+                                                     Predicate<UpstreamResponse> acceptable,
+                                                     Runnable onHedge) {
+        HedgedCall call = new HedgedCall(acceptable);
+        synchronized (call.lock) {
+            call.outstanding++;
+        }
+        call.launch(primary);
+
+        CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            synchronized (call.lock) {
+                if (call.result.isDone() || call.outstanding == 0) {
+                    return;
+                }
+                call.outstanding++;
+            }
+            onHedge.run();
+            call.launch(hedge);
+        });
+        return call.result;
+    }
+
+    private void launch(Supplier<CompletableFuture<UpstreamResponse>> supplier) {
+        CompletableFuture<UpstreamResponse> attempt = supplier.get();
+        attempts.add(attempt);
+        if (result.isDone()) {
+            attempt.cancel(true);
+            return;
+        }
+        attempt.whenComplete(this::onAttemptComplete);
+    }
+
+    private void onAttemptComplete(UpstreamResponse response, Throwable error) {
+        if (error == null && acceptable.test(response)) {
+            result.complete(response);
+            return;
+        }
+        boolean last;
+        synchronized (lock) {
+            last = --outstanding == 0;
+        }
+        if (last) {
+            if (error != null) {
+                result.completeExceptionally(Futures.unwrap(error));
+            } else {
+                result.complete(response);
+            }
+        }
+    }
+}
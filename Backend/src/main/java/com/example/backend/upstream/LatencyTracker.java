@@ -0,0 +1,43 @@
+package com.example.backend.upstream;
+
+import java.util.Arrays;
+
+/**
+ * Latences des derniers appels réussis d'un fournisseur (fenêtre circulaire),
+ * pour calculer le seuil de couverture (hedging)
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private int index;
+    private int count;
+
+    public LatencyTracker(int windowSize) {
+        this.samples = new long[Math.max(1, windowSize)];
+    }
+
+    public synchronized void record(long latencyMillis) {
+        samples[index] = latencyMillis;
+        index = (index + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Percentile (0 à 1) des latences enregistrées, -1 si aucune
+     */
+    public synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(rank, count - 1))];
+    }
+}
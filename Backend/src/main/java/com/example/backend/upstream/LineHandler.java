@@ -0,0 +1,12 @@
+package com.example.backend.upstream;
+
+import java.io.IOException;
+
+/**
+ * Reçoit le corps d'une réponse en streaming, ligne par ligne, au fur et à mesure de sa réception
+ */
+@FunctionalInterface
+public interface LineHandler {
+
+    void onLine(String line) throws IOException;
+}
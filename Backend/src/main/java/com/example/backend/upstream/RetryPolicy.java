@@ -0,0 +1,46 @@
+package com.example.backend.upstream;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Politique de nouvelles tentatives d'un fournisseur : backoff exponentiel avec jitter,
+ * uniquement sur 429, 5xx, erreurs réseau et timeouts.
+ * Les refus locaux ({@link UpstreamUnavailableException}) et les échéances dépassées
+ * ({@link DeadlineExceededException}) ne sont jamais retentés.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxAttempts() { return maxAttempts; }
+
+    public boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    public boolean isRetryable(Throwable error) {
+        if (error instanceof UpstreamUnavailableException || error instanceof DeadlineExceededException) {
+            return false;
+        }
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    /**
+     * Attente avant la tentative suivante : plafond exponentiel base * 2^(n-1),
+     * tiré au hasard entre la moitié et la totalité du plafond pour désynchroniser les clients
+     */
+    public long backoffMillis(int attempt) {
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+}
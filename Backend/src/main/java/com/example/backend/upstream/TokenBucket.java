@@ -0,0 +1,80 @@
+package com.example.backend.upstream;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Seau à jetons : capacité de rafale + remplissage continu.
+ * Une réservation peut mettre le seau en négatif (dette remboursée par le remplissage),
+ * ce qui ordonne naturellement les appelants qui acceptent d'attendre.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    private long rejected;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = Math.max(1, capacity);
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Réserve des jetons.
+     *
+     * @return l'attente nécessaire en millisecondes (0 si immédiat), ou -1 si elle dépasserait maxWaitMillis
+     */
+    public synchronized long reserve(double cost, long maxWaitMillis) {
+        refill();
+        double needed = Math.min(cost, capacity);
+        if (tokens >= needed) {
+            tokens -= needed;
+            return 0;
+        }
+        long waitMillis = (long) Math.ceil((needed - tokens) / refillPerNano / 1_000_000d);
+        if (waitMillis > maxWaitMillis) {
+            rejected++;
+            return -1;
+        }
+        tokens -= needed;
+        return waitMillis;
+    }
+
+    /**
+     * Rend des jetons réservés pour un appel finalement non émis
+     */
+    public synchronized void refund(double cost) {
+        tokens = Math.min(capacity, tokens + Math.min(cost, capacity));
+    }
+
+    /**
+     * Attente avant qu'une réservation de ce coût puisse être servie, en millisecondes
+     */
+    public synchronized long millisUntilAvailable(double cost) {
+        refill();
+        double needed = Math.min(cost, capacity);
+        return tokens >= needed ? 0 : (long) Math.ceil((needed - tokens) / refillPerNano / 1_000_000d);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        refill();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("available", Math.max(0, tokens));
+        stats.put("refillPerSecond", refillPerNano * 1_000_000_000d);
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+}
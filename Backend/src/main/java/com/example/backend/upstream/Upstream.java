@@ -0,0 +1,21 @@
+package com.example.backend.upstream;
+
+/**
+ * Fournisseurs externes appelés par le backend (IA et recherche)
+ */
+public enum Upstream {
+    GEMINI("gemini"),
+    OPENAI("openai"),
+    GOOGLE_SEARCH("google-search");
+
+    private final String key;
+
+    Upstream(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Clé utilisée dans les propriétés de configuration (upstream.&lt;key&gt;.*)
+     */
+    public String getKey() { return key; }
+}
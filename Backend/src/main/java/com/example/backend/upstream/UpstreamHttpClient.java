@@ -0,0 +1,595 @@
+package com.example.backend.upstream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.async.methods.SimpleBody;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clients HTTP partagés vers les fournisseurs externes (Gemini, OpenAI, Google).
+ * Un pool de connexions keep-alive par fournisseur, avec limite par route,
+ * éviction des connexions inactives et statistiques exposées.
+ * Chaque fournisseur dispose aussi d'un client asynchrone (HTTP/2 négocié via ALPN)
+ * pour le mode d'exécution non bloquant.
+ * Tous les appels passent par la limite de débit ({@link UpstreamRateLimiter}), puis par
+ * le disjoncteur et le bulkhead du fournisseur ({@link UpstreamResilience}).
+ */
+@Component
+public class UpstreamHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamHttpClient.class);
+
+    // Marge de déclenchement d'un timeout réduit au temps restant de l'échéance
+    private static final long DEADLINE_SLACK_MILLIS = 50;
+
+    @Autowired
+    private UpstreamProperties properties;
+
+    @Autowired
+    private UpstreamResilience resilience;
+
+    @Autowired
+    private UpstreamRateLimiter rateLimiter;
+
+    // Les suites des échanges asynchrones ne tournent pas sur les threads d'I/O du client
+    @Autowired
+    @Qualifier("upstreamCallbackExecutor")
+    private Executor callbackExecutor;
+
+    private final Map<Upstream, PoolingHttpClientConnectionManager> connectionManagers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, CloseableHttpClient> clients = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, PoolingAsyncClientConnectionManager> asyncConnectionManagers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, CloseableHttpAsyncClient> asyncClients = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, RequestConfig> requestConfigs = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, RetryPolicy> retryPolicies = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, LatencyTracker> latencyTrackers = new EnumMap<>(Upstream.class);
+
+    @PostConstruct
+    public void init() {
+        for (Upstream upstream : Upstream.values()) {
+            int maxPerRoute = properties.getInt(upstream, "pool.max-per-route", 20);
+            int maxTotal = properties.getInt(upstream, "pool.max-total", maxPerRoute * 2);
+            long idleEvictSeconds = properties.getLong(upstream, "pool.idle-evict-seconds", 30);
+            long timeToLiveSeconds = properties.getLong(upstream, "pool.time-to-live-seconds", 300);
+
+            ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(properties.getLong(upstream, "timeout.connect-seconds", 5)))
+                .setSocketTimeout(Timeout.ofSeconds(properties.getLong(upstream, "timeout.socket-seconds", 60)))
+                .setTimeToLive(TimeValue.ofSeconds(timeToLiveSeconds))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                .build();
+
+            PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+
+            RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(properties.getLong(upstream, "pool.acquire-timeout-seconds", 10)))
+                .setResponseTimeout(Timeout.ofSeconds(properties.getLong(upstream, "timeout.response-seconds", 60)))
+                .build();
+            requestConfigs.put(upstream, requestConfig);
+
+            CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .evictExpiredConnections()
+                .build();
+
+            connectionManagers.put(upstream, connectionManager);
+            clients.put(upstream, client);
+
+            initAsyncClient(upstream, maxPerRoute, maxTotal, idleEvictSeconds, connectionConfig, requestConfig);
+
+            retryPolicies.put(upstream, new RetryPolicy(
+                properties.getInt(upstream, "retry.max-attempts", 2),
+                properties.getLong(upstream, "retry.base-delay-ms", 300),
+                properties.getLong(upstream, "retry.max-delay-ms", 4000)));
+            latencyTrackers.put(upstream, new LatencyTracker(properties.getInt(upstream, "hedge.window-size", 200)));
+
+            logger.info("Pool HTTP {} initialisé (max/route: {}, max total: {}, éviction: {}s)",
+                upstream.getKey(), maxPerRoute, maxTotal, idleEvictSeconds);
+        }
+    }
+
+    private void initAsyncClient(Upstream upstream, int maxPerRoute, int maxTotal, long idleEvictSeconds,
+                                 ConnectionConfig connectionConfig, RequestConfig requestConfig) {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxTotal)
+            .setMaxConnPerRoute(maxPerRoute)
+            .setDefaultConnectionConfig(connectionConfig)
+            .setDefaultTlsConfig(TlsConfig.custom()
+                .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                .build())
+            .build();
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+            .setIoThreadCount(properties.getInt(upstream, "async.io-threads", 2))
+            .build();
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+            .setConnectionManager(connectionManager)
+            .setIOReactorConfig(ioReactorConfig)
+            .setDefaultRequestConfig(requestConfig)
+            .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+            .evictExpiredConnections()
+            .build();
+        client.start();
+
+        asyncConnectionManagers.put(upstream, connectionManager);
+        asyncClients.put(upstream, client);
+    }
+
+    /**
+     * Exécute une requête sur le pool du fournisseur et lit entièrement le corps
+     * de la réponse, ce qui rend la connexion au pool pour réutilisation.
+     * Les 429, 5xx et erreurs réseau sont retentés selon la politique du fournisseur ;
+     * la dernière réponse obtenue est retournée telle quelle.
+     */
+    public UpstreamResponse execute(Upstream upstream, ClassicHttpRequest request) throws IOException {
+        return execute(upstream, request, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #execute(Upstream, ClassicHttpRequest)}, dans la limite de l'échéance :
+     * le timeout de réponse est réduit au temps restant et aucune tentative ne part
+     * si l'attente (backoff, limite de débit) dépasse l'échéance.
+     */
+    public UpstreamResponse execute(Upstream upstream, ClassicHttpRequest request, Deadline deadline) throws IOException {
+        RetryPolicy policy = retryPolicies.get(upstream);
+        String stage = "appel " + upstream.getKey();
+        for (int attempt = 1; ; attempt++) {
+            deadline.check(stage);
+            UpstreamResponse response = null;
+            IOException failure = null;
+            try {
+                response = executeOnce(upstream, request, deadline);
+                if (!policy.isRetryable(response.getStatusCode())) {
+                    return response;
+                }
+            } catch (IOException e) {
+                if (deadline.isExpired() && !(e instanceof DeadlineExceededException)) {
+                    throw (DeadlineExceededException) deadline.exceeded(stage).initCause(e);
+                }
+                if (!policy.isRetryable(e)) {
+                    throw e;
+                }
+                failure = e;
+            }
+
+            long backoffMillis = policy.backoffMillis(attempt);
+            if (attempt >= policy.getMaxAttempts() || backoffMillis >= deadline.remainingMillis()) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+            logger.warn("Échec de l'appel {} ({}), tentative {}/{}", upstream.getKey(),
+                failure != null ? failure.getMessage() : response.getStatusCode(), attempt + 1, policy.getMaxAttempts());
+            pause(backoffMillis);
+        }
+    }
+
+    /**
+     * Exécute une requête dont la réponse 2xx est transmise ligne par ligne dès sa réception (SSE, NDJSON).
+     * Même limite de débit, disjoncteur, bulkhead et échéance que {@link #execute}, mais sans nouvelle
+     * tentative : une partie de la réponse a déjà pu être traitée par l'appelant.
+     * Une réponse d'erreur est lue entièrement et retournée ; pour une réponse 2xx, le corps retourné est vide.
+     */
+    public UpstreamResponse executeStreaming(Upstream upstream, ClassicHttpRequest request, Deadline deadline,
+                                             LineHandler lineHandler) throws IOException {
+        String stage = "appel " + upstream.getKey();
+        deadline.check(stage);
+        try {
+            return executeOnce(upstream, request, deadline, lineHandler);
+        } catch (IOException e) {
+            if (deadline.isExpired() && !(e instanceof DeadlineExceededException)) {
+                throw (DeadlineExceededException) deadline.exceeded(stage).initCause(e);
+            }
+            throw e;
+        }
+    }
+
+    private UpstreamResponse executeOnce(Upstream upstream, ClassicHttpRequest request, Deadline deadline) throws IOException {
+        return executeOnce(upstream, request, deadline, null);
+    }
+
+    private UpstreamResponse executeOnce(Upstream upstream, ClassicHttpRequest request, Deadline deadline,
+                                         LineHandler lineHandler) throws IOException {
+        HttpEntity requestEntity = request.getEntity();
+        long delayMillis = rateLimiter.reserve(upstream, requestEntity != null ? Math.max(0, requestEntity.getContentLength()) : 0);
+        if (delayMillis >= deadline.remainingMillis()) {
+            rateLimiter.refundQuota(upstream);
+            throw deadline.exceeded("attente de la limite de débit " + upstream.getKey());
+        }
+        if (delayMillis > 0) {
+            try {
+                pause(delayMillis);
+            } catch (InterruptedIOException e) {
+                rateLimiter.refundQuota(upstream);
+                throw e;
+            }
+        }
+
+        try {
+            resilience.acquire(upstream, true);
+        } catch (UpstreamUnavailableException e) {
+            rateLimiter.refundQuota(upstream);
+            throw e;
+        }
+        UpstreamResilience.Outcome outcome = UpstreamResilience.Outcome.IGNORED;
+        AtomicBoolean lineHandlerFailed = new AtomicBoolean();
+        long startNanos = System.nanoTime();
+        try {
+            UpstreamResponse upstreamResponse = clients.get(upstream).execute(request, contextFor(upstream, deadline), response -> {
+                HttpEntity entity = response.getEntity();
+                if (lineHandler != null && entity != null && response.getCode() / 100 == 2) {
+                    readLines(entity, deadline, "lecture du flux " + upstream.getKey(), lineHandler, lineHandlerFailed);
+                    return new UpstreamResponse(response.getCode(), "");
+                }
+                String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "";
+                return new UpstreamResponse(response.getCode(), body);
+            });
+            outcome = UpstreamResilience.classify(upstreamResponse.getStatusCode());
+            // La durée d'un flux dépend de sa longueur : elle ne sert pas au calcul du délai de couverture
+            if (outcome == UpstreamResilience.Outcome.SUCCESS && lineHandler == null) {
+                latencyTrackers.get(upstream).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+            return upstreamResponse;
+        } catch (IOException | RuntimeException e) {
+            outcome = failureOutcome(e, deadline, lineHandlerFailed.get());
+            throw e;
+        } finally {
+            resilience.release(upstream, outcome);
+        }
+    }
+
+    /**
+     * Issue d'un échange en échec pour le disjoncteur : seules les erreurs du fournisseur comptent.
+     * Échéance de la requête atteinte (y compris par un timeout réduit au temps restant), interruption
+     * et exception de l'appelant (traitement des lignes, client déconnecté) sont ignorées.
+     */
+    private UpstreamResilience.Outcome failureOutcome(Throwable error, Deadline deadline, boolean callerFailed) {
+        if (callerFailed || error instanceof DeadlineExceededException) {
+            return UpstreamResilience.Outcome.IGNORED;
+        }
+        if (error instanceof InterruptedIOException) {
+            boolean deadlineReached = deadline.isBounded() && deadline.remainingMillis() <= DEADLINE_SLACK_MILLIS;
+            boolean interrupted = error.getClass() == InterruptedIOException.class || Thread.currentThread().isInterrupted();
+            if (deadlineReached || interrupted) {
+                return UpstreamResilience.Outcome.IGNORED;
+            }
+        }
+        return UpstreamResilience.Outcome.FAILURE;
+    }
+
+    private void readLines(HttpEntity entity, Deadline deadline, String stage, LineHandler lineHandler,
+                           AtomicBoolean lineHandlerFailed) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                deadline.check(stage);
+                try {
+                    lineHandler.onLine(line);
+                } catch (IOException | RuntimeException e) {
+                    lineHandlerFailed.set(true);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Contexte d'un échange : timeouts de réponse et d'attente du pool réduits au temps restant
+     */
+    private HttpClientContext contextFor(Upstream upstream, Deadline deadline) {
+        HttpClientContext context = HttpClientContext.create();
+        if (deadline.isBounded()) {
+            long remainingMillis = Math.max(1, deadline.remainingMillis());
+            RequestConfig defaults = requestConfigs.get(upstream);
+            context.setRequestConfig(RequestConfig.copy(defaults)
+                .setResponseTimeout(shorter(defaults.getResponseTimeout(), remainingMillis))
+                .setConnectionRequestTimeout(shorter(defaults.getConnectionRequestTimeout(), remainingMillis))
+                .build());
+        }
+        return context;
+    }
+
+    private Timeout shorter(Timeout configured, long remainingMillis) {
+        return configured == null || configured.toMilliseconds() > remainingMillis
+            ? Timeout.ofMilliseconds(remainingMillis)
+            : configured;
+    }
+
+    private void pause(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Attente interrompue");
+        }
+    }
+
+    /**
+     * Exécute une requête sans bloquer le thread appelant.
+     * Le corps est décodé en UTF-8 quel que soit le Content-Type annoncé.
+     * Annuler le future retourné annule l'échange HTTP en cours.
+     * Mêmes nouvelles tentatives que {@link #execute}, planifiées sans occuper de thread ;
+     * si la couverture est activée pour le fournisseur, chaque tentative est couverte
+     * par une seconde requête après le p95 des latences récentes.
+     */
+    public CompletableFuture<UpstreamResponse> executeAsync(Upstream upstream, SimpleHttpRequest request) {
+        return executeAsync(upstream, request, Deadline.none());
+    }
+
+    /**
+     * Comme {@link #executeAsync(Upstream, SimpleHttpRequest)}, dans la limite de l'échéance :
+     * à l'échéance, le future échoue avec {@link DeadlineExceededException} et l'échange en cours est annulé.
+     */
+    public CompletableFuture<UpstreamResponse> executeAsync(Upstream upstream, SimpleHttpRequest request, Deadline deadline) {
+        CompletableFuture<UpstreamResponse> result = new CompletableFuture<>();
+        if (deadline.isBounded()) {
+            CompletableFuture.delayedExecutor(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                .execute(() -> result.completeExceptionally(deadline.exceeded("appel " + upstream.getKey())));
+        }
+        runAttempt(upstream, request, deadline, 1, result);
+        return result;
+    }
+
+    private void runAttempt(Upstream upstream, SimpleHttpRequest request, Deadline deadline, int attempt,
+                            CompletableFuture<UpstreamResponse> result) {
+        if (result.isDone()) {
+            return;
+        }
+        if (deadline.isExpired()) {
+            result.completeExceptionally(deadline.exceeded("appel " + upstream.getKey()));
+            return;
+        }
+        RetryPolicy policy = retryPolicies.get(upstream);
+        CompletableFuture<UpstreamResponse> exchange = executeHedgedAsync(upstream, request, deadline);
+        result.whenComplete((response, error) -> {
+            if (!exchange.isDone()) {
+                exchange.cancel(true);
+            }
+        });
+        exchange.whenComplete((response, error) -> {
+            Throwable cause = error != null ? Futures.unwrap(error) : null;
+            long backoffMillis = policy.backoffMillis(attempt);
+            boolean retry = attempt < policy.getMaxAttempts() && !result.isDone()
+                && backoffMillis < deadline.remainingMillis()
+                && (cause != null ? policy.isRetryable(cause) : policy.isRetryable(response.getStatusCode()));
+            if (!retry) {
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+            logger.warn("Échec de l'appel {} ({}), tentative {}/{}", upstream.getKey(),
+                cause != null ? cause.getMessage() : response.getStatusCode(), attempt + 1, policy.getMaxAttempts());
+            CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS, callbackExecutor)
+                .execute(() -> runAttempt(upstream, copyOf(request), deadline, attempt + 1, result));
+        });
+    }
+
+    /**
+     * Une tentative, couverte par une seconde requête si le fournisseur l'autorise
+     * et que suffisamment de latences ont été mesurées
+     */
+    private CompletableFuture<UpstreamResponse> executeHedgedAsync(Upstream upstream, SimpleHttpRequest request, Deadline deadline) {
+        long hedgeDelayMillis = hedgeDelayMillis(upstream);
+        if (hedgeDelayMillis < 0 || hedgeDelayMillis >= deadline.remainingMillis()) {
+            return executeOnceAsync(upstream, request, deadline);
+        }
+        RetryPolicy policy = retryPolicies.get(upstream);
+        return HedgedCall.start(
+            () -> executeOnceAsync(upstream, request, deadline),
+            () -> executeOnceAsync(upstream, copyOf(request), deadline),
+            hedgeDelayMillis,
+            response -> !policy.isRetryable(response.getStatusCode()),
+            () -> logger.info("Pas de réponse {} après {} ms, requête de couverture envoyée", upstream.getKey(), hedgeDelayMillis));
+    }
+
+    /**
+     * Délai de couverture : p95 des latences récentes (au moins hedge.min-delay-ms), -1 si désactivé
+     */
+    private long hedgeDelayMillis(Upstream upstream) {
+        if (!properties.getBoolean(upstream, "hedge.enabled", false)) {
+            return -1;
+        }
+        LatencyTracker tracker = latencyTrackers.get(upstream);
+        if (tracker.getCount() < properties.getInt(upstream, "hedge.min-samples", 20)) {
+            return -1;
+        }
+        long p95 = tracker.percentile(properties.getDouble(upstream, "hedge.percentile", 0.95));
+        return Math.max(properties.getLong(upstream, "hedge.min-delay-ms", 500), p95);
+    }
+
+    /**
+     * Copie indépendante, pour ne pas partager les en-têtes d'une requête entre deux échanges
+     */
+    private SimpleHttpRequest copyOf(SimpleHttpRequest request) {
+        return SimpleRequestBuilder.copy(request).build();
+    }
+
+    /**
+     * Une tentative : limite de débit (appel différé sans occuper de thread si besoin),
+     * puis disjoncteur et bulkhead
+     */
+    private CompletableFuture<UpstreamResponse> executeOnceAsync(Upstream upstream, SimpleHttpRequest request, Deadline deadline) {
+        long delayMillis;
+        try {
+            delayMillis = rateLimiter.reserve(upstream, bodyLength(request));
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (delayMillis >= deadline.remainingMillis()) {
+            rateLimiter.refundQuota(upstream);
+            return CompletableFuture.failedFuture(deadline.exceeded("attente de la limite de débit " + upstream.getKey()));
+        }
+        if (delayMillis == 0) {
+            return dispatchAsync(upstream, request, deadline);
+        }
+
+        CompletableFuture<UpstreamResponse> delayed = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS, callbackExecutor).execute(() -> {
+            if (delayed.isDone()) {
+                rateLimiter.refundQuota(upstream);
+                return;
+            }
+            CompletableFuture<UpstreamResponse> exchange = dispatchAsync(upstream, request, deadline);
+            delayed.whenComplete((response, error) -> {
+                if (delayed.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            exchange.whenComplete((response, error) -> {
+                if (error != null) {
+                    delayed.completeExceptionally(Futures.unwrap(error));
+                } else {
+                    delayed.complete(response);
+                }
+            });
+        });
+        return delayed;
+    }
+
+    private CompletableFuture<UpstreamResponse> dispatchAsync(Upstream upstream, SimpleHttpRequest request, Deadline deadline) {
+        try {
+            resilience.acquire(upstream, false);
+        } catch (UpstreamUnavailableException e) {
+            rateLimiter.refundQuota(upstream);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<UpstreamResponse> future = new CompletableFuture<>();
+        long startNanos = System.nanoTime();
+        Future<SimpleHttpResponse> exchange;
+        try {
+            exchange = asyncClients.get(upstream).execute(request, contextFor(upstream, deadline), new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    byte[] body = response.getBodyBytes();
+                    UpstreamResponse upstreamResponse = new UpstreamResponse(response.getCode(),
+                        body != null ? new String(body, StandardCharsets.UTF_8) : "");
+                    callbackExecutor.execute(() -> future.complete(upstreamResponse));
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    callbackExecutor.execute(() -> future.completeExceptionally(ex));
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            resilience.release(upstream, UpstreamResilience.Outcome.IGNORED);
+            return CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                exchange.cancel(true);
+                resilience.release(upstream, UpstreamResilience.Outcome.IGNORED);
+            } else {
+                UpstreamResilience.Outcome outcome = error == null
+                    ? UpstreamResilience.classify(response.getStatusCode())
+                    : failureOutcome(Futures.unwrap(error), deadline, false);
+                if (outcome == UpstreamResilience.Outcome.SUCCESS) {
+                    latencyTrackers.get(upstream).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                }
+                resilience.release(upstream, outcome);
+            }
+        });
+        return future;
+    }
+
+    private long bodyLength(SimpleHttpRequest request) {
+        SimpleBody body = request.getBody();
+        if (body == null) {
+            return 0;
+        }
+        if (body.isBytes()) {
+            return body.getBodyBytes().length;
+        }
+        String text = body.getBodyText();
+        return text != null ? text.length() : 0;
+    }
+
+    /**
+     * Statistiques des pools de connexions, par fournisseur
+     */
+    public Map<String, Map<String, Integer>> getPoolStats() {
+        Map<String, Map<String, Integer>> stats = new LinkedHashMap<>();
+        connectionManagers.forEach((upstream, connectionManager) ->
+            stats.put(upstream.getKey(), toMap(connectionManager.getTotalStats(), connectionManager.getRoutes().size())));
+        asyncConnectionManagers.forEach((upstream, connectionManager) ->
+            stats.put(upstream.getKey() + "-async", toMap(connectionManager.getTotalStats(), connectionManager.getRoutes().size())));
+        return stats;
+    }
+
+    private Map<String, Integer> toMap(PoolStats total, int routes) {
+        Map<String, Integer> upstreamStats = new LinkedHashMap<>();
+        upstreamStats.put("leased", total.getLeased());
+        upstreamStats.put("available", total.getAvailable());
+        upstreamStats.put("pending", total.getPending());
+        upstreamStats.put("max", total.getMax());
+        upstreamStats.put("routes", routes);
+        return upstreamStats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.forEach((upstream, client) -> client.close(CloseMode.GRACEFUL));
+        asyncClients.forEach((upstream, client) -> client.close(CloseMode.GRACEFUL));
+        logger.info("Pools HTTP fermés");
+    }
+}
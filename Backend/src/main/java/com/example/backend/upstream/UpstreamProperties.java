@@ -0,0 +1,42 @@
+package com.example.backend.upstream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lecture des réglages par fournisseur.
+ * Une propriété upstream.&lt;key&gt;.&lt;nom&gt; surcharge upstream.default.&lt;nom&gt;,
+ * qui surcharge la valeur par défaut passée en paramètre.
+ */
+@Component
+public class UpstreamProperties {
+
+    @Autowired
+    private Environment environment;
+
+    public int getInt(Upstream upstream, String name, int defaultValue) {
+        return resolve(upstream, name, Integer.class, defaultValue);
+    }
+
+    public long getLong(Upstream upstream, String name, long defaultValue) {
+        return resolve(upstream, name, Long.class, defaultValue);
+    }
+
+    public double getDouble(Upstream upstream, String name, double defaultValue) {
+        return resolve(upstream, name, Double.class, defaultValue);
+    }
+
+    public boolean getBoolean(Upstream upstream, String name, boolean defaultValue) {
+        return resolve(upstream, name, Boolean.class, defaultValue);
+    }
+
+    public String getString(Upstream upstream, String name, String defaultValue) {
+        return resolve(upstream, name, String.class, defaultValue);
+    }
+
+    private <T> T resolve(Upstream upstream, String name, Class<T> type, T defaultValue) {
+        T fallback = environment.getProperty("upstream.default." + name, type, defaultValue);
+        return environment.getProperty("upstream." + upstream.getKey() + "." + name, type, fallback);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.backend.upstream;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limitation de débit côté client, par fournisseur :
+ * un seau de requêtes par seconde, un seau de tokens par minute (estimés d'après la taille
+ * du corps, pour les limites TPM d'OpenAI) et un quota journalier.
+ * Une réservation qui demande une courte attente est acceptée (l'appel est différé),
+ * au-delà de rate.max-wait-ms l'appel est refusé tout de suite avec
+ * {@link UpstreamUnavailableException}, plutôt que de partir en 429.
+ */
+@Component
+public class UpstreamRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamRateLimiter.class);
+
+    // Approximation courante : ~4 caractères par token
+    private static final int BYTES_PER_TOKEN = 4;
+
+    @Autowired
+    private UpstreamProperties properties;
+
+    private final Map<Upstream, TokenBucket> requestBuckets = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, TokenBucket> tokenBuckets = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, DailyQuota> dailyQuotas = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Long> maxWaitMillis = new EnumMap<>(Upstream.class);
+
+    @PostConstruct
+    public void init() {
+        for (Upstream upstream : Upstream.values()) {
+            double requestsPerSecond = properties.getDouble(upstream, "rate.requests-per-second", 0);
+            if (requestsPerSecond > 0) {
+                requestBuckets.put(upstream, new TokenBucket(
+                    properties.getDouble(upstream, "rate.burst", Math.max(1, requestsPerSecond)), requestsPerSecond));
+            }
+
+            double tokensPerMinute = properties.getDouble(upstream, "rate.tokens-per-minute", 0);
+            if (tokensPerMinute > 0) {
+                tokenBuckets.put(upstream, new TokenBucket(tokensPerMinute, tokensPerMinute / 60));
+            }
+
+            long dailyLimit = properties.getLong(upstream, "quota.daily", 0);
+            if (dailyLimit > 0) {
+                ZoneId zone = ZoneId.of(properties.getString(upstream, "quota.zone", "America/Los_Angeles"));
+                dailyQuotas.put(upstream, new DailyQuota(dailyLimit, zone));
+            }
+
+            maxWaitMillis.put(upstream, properties.getLong(upstream, "rate.max-wait-ms", 2000));
+        }
+    }
+
+    /**
+     * Réserve le droit d'émettre un appel.
+     *
+     * @param bodyBytes taille du corps de la requête, pour estimer les tokens consommés
+     * @return délai à respecter avant d'émettre l'appel, en millisecondes
+     */
+    public long reserve(Upstream upstream, long bodyBytes) throws UpstreamUnavailableException {
+        DailyQuota quota = dailyQuotas.get(upstream);
+        if (quota != null && !quota.tryConsume()) {
+            logger.warn("Quota journalier {} épuisé", upstream.getKey());
+            throw new UpstreamUnavailableException(upstream, "quota journalier épuisé", quota.millisUntilReset());
+        }
+
+        long maxWait = maxWaitMillis.get(upstream);
+        long delayMillis = 0;
+
+        TokenBucket requestBucket = requestBuckets.get(upstream);
+        if (requestBucket != null) {
+            long wait = requestBucket.reserve(1, maxWait);
+            if (wait < 0) {
+                refundQuota(upstream);
+                throw rateLimited(upstream, requestBucket.millisUntilAvailable(1));
+            }
+            delayMillis = wait;
+        }
+
+        TokenBucket tokenBucket = tokenBuckets.get(upstream);
+        if (tokenBucket != null) {
+            double estimatedTokens = Math.max(1, bodyBytes / BYTES_PER_TOKEN);
+            long wait = tokenBucket.reserve(estimatedTokens, maxWait);
+            if (wait < 0) {
+                refundQuota(upstream);
+                if (requestBucket != null) {
+                    requestBucket.refund(1);
+                }
+                throw rateLimited(upstream, tokenBucket.millisUntilAvailable(estimatedTokens));
+            }
+            delayMillis = Math.max(delayMillis, wait);
+        }
+
+        if (delayMillis > 0) {
+            logger.debug("Appel {} différé de {} ms (limite de débit)", upstream.getKey(), delayMillis);
+        }
+        return delayMillis;
+    }
+
+    /**
+     * Rend l'unité de quota d'un appel finalement non émis (refusé localement)
+     */
+    public void refundQuota(Upstream upstream) {
+        DailyQuota quota = dailyQuotas.get(upstream);
+        if (quota != null) {
+            quota.refund();
+        }
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Upstream upstream : Upstream.values()) {
+            Map<String, Object> upstreamStats = new LinkedHashMap<>();
+            if (requestBuckets.containsKey(upstream)) {
+                upstreamStats.put("requests", requestBuckets.get(upstream).getStats());
+            }
+            if (tokenBuckets.containsKey(upstream)) {
+                upstreamStats.put("tokens", tokenBuckets.get(upstream).getStats());
+            }
+            if (dailyQuotas.containsKey(upstream)) {
+                upstreamStats.put("dailyQuota", dailyQuotas.get(upstream).getStats());
+            }
+            stats.put(upstream.getKey(), upstreamStats);
+        }
+        return stats;
+    }
+
+    private UpstreamUnavailableException rateLimited(Upstream upstream, long retryAfterMillis) {
+        logger.warn("Limite de débit {} atteinte, appel refusé", upstream.getKey());
+        return new UpstreamUnavailableException(upstream, "limite de débit atteinte", retryAfterMillis);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.backend.upstream;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disjoncteur et bulkhead par fournisseur, appliqués par {@link UpstreamHttpClient}
+ * à chaque appel synchrone ou asynchrone.
+ * Seuls les 429, les 5xx et les erreurs réseau comptent comme des échecs du fournisseur.
+ */
+@Component
+public class UpstreamResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamResilience.class);
+
+    public enum Outcome { SUCCESS, FAILURE, IGNORED }
+
+    @Autowired
+    private UpstreamProperties properties;
+
+    private final Map<Upstream, CircuitBreaker> breakers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Bulkhead> bulkheads = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Long> bulkheadWaitMillis = new EnumMap<>(Upstream.class);
+
+    @PostConstruct
+    public void init() {
+        for (Upstream upstream : Upstream.values()) {
+            breakers.put(upstream, new CircuitBreaker(
+                properties.getInt(upstream, "breaker.window-size", 20),
+                properties.getInt(upstream, "breaker.minimum-calls", 10),
+                properties.getDouble(upstream, "breaker.failure-rate", 0.5),
+                Duration.ofSeconds(properties.getLong(upstream, "breaker.open-seconds", 30)),
+                properties.getInt(upstream, "breaker.half-open-probes", 2)));
+            bulkheads.put(upstream, new Bulkhead(properties.getInt(upstream, "bulkhead.max-concurrent", 10)));
+            bulkheadWaitMillis.put(upstream, properties.getLong(upstream, "bulkhead.max-wait-ms", 200));
+        }
+    }
+
+    /**
+     * Réserve le droit d'appeler le fournisseur, ou échoue immédiatement.
+     * Un appel bloquant peut attendre brièvement une place dans le bulkhead, un appel asynchrone jamais.
+     * Chaque acquisition réussie doit être suivie d'un {@link #release(Upstream, Outcome)}.
+     */
+    public void acquire(Upstream upstream, boolean blocking) throws UpstreamUnavailableException {
+        CircuitBreaker breaker = breakers.get(upstream);
+        if (!breaker.tryAcquire()) {
+            logger.warn("Circuit ouvert pour {}, appel refusé", upstream.getKey());
+            throw new UpstreamUnavailableException(upstream, "circuit ouvert", breaker.getRetryAfterMillis());
+        }
+        if (!bulkheads.get(upstream).tryAcquire(blocking ? bulkheadWaitMillis.get(upstream) : 0)) {
+            breaker.onIgnored();
+            logger.warn("Trop d'appels simultanés vers {}, appel refusé", upstream.getKey());
+            throw new UpstreamUnavailableException(upstream, "trop d'appels simultanés", 1000);
+        }
+    }
+
+    public void release(Upstream upstream, Outcome outcome) {
+        bulkheads.get(upstream).release();
+        CircuitBreaker breaker = breakers.get(upstream);
+        CircuitBreaker.State before = breaker.getState();
+        switch (outcome) {
+            case SUCCESS -> breaker.onSuccess();
+            case FAILURE -> breaker.onFailure();
+            default -> breaker.onIgnored();
+        }
+        CircuitBreaker.State after = breaker.getState();
+        if (before != after) {
+            logger.warn("Circuit {} : {} -> {}", upstream.getKey(), before, after);
+        }
+    }
+
+    /**
+     * 429 et 5xx signalent un fournisseur saturé ou en panne ; les autres codes sont des réponses valides
+     */
+    public static Outcome classify(int statusCode) {
+        return statusCode == 429 || statusCode >= 500 ? Outcome.FAILURE : Outcome.SUCCESS;
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Upstream upstream : Upstream.values()) {
+            Map<String, Object> upstreamStats = new LinkedHashMap<>();
+            upstreamStats.put("breaker", breakers.get(upstream).getStats());
+            upstreamStats.put("bulkhead", bulkheads.get(upstream).getStats());
+            stats.put(upstream.getKey(), upstreamStats);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.backend.upstream;
+
+/**
+ * Réponse HTTP d'un fournisseur externe, corps entièrement lu
+ */
+public class UpstreamResponse {
+    private final int statusCode;
+    private final String body;
+
+    public UpstreamResponse(int statusCode, String body) {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public int getStatusCode() { return statusCode; }
+    public String getBody() { return body; }
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.backend.upstream;
+
+import java.io.IOException;
+
+/**
+ * Appel refusé localement sans contacter le fournisseur (circuit ouvert, bulkhead plein...).
+ * Levée en quelques millisecondes : l'appelant doit dégrader ou répondre 503.
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    private final Upstream upstream;
+    private final String reason;
+    private final long retryAfterMillis;
+
+    public UpstreamUnavailableException(Upstream upstream, String reason, long retryAfterMillis) {
+        super("Service " + upstream.getKey() + " indisponible (" + reason + ")");
+        this.upstream = upstream;
+        this.reason = reason;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public Upstream getUpstream() { return upstream; }
+    public String getReason() { return reason; }
+    public long getRetryAfterMillis() { return retryAfterMillis; }
+
+    /**
+     * Délai conseillé avant de réessayer, en secondes (en-tête Retry-After)
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMillis + 999) / 1000);
+    }
+
+    /**
+     * Cherche cette exception dans la chaîne des causes, null si absente
+     */
+    public static UpstreamUnavailableException findIn(Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof UpstreamUnavailableException unavailable) {
+                return unavailable;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+}
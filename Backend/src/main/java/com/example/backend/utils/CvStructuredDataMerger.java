@@ -0,0 +1,183 @@
+package com.example.backend.utils;
+
+import com.example.backend.service.GeminiCvExtractionService.Certification;
+import com.example.backend.service.GeminiCvExtractionService.CvStructuredData;
+import com.example.backend.service.GeminiCvExtractionService.Education;
+import com.example.backend.service.GeminiCvExtractionService.Experience;
+import com.example.backend.service.GeminiCvExtractionService.Language;
+import com.example.backend.service.GeminiCvExtractionService.PersonalInfo;
+import com.example.backend.service.GeminiCvExtractionService.Project;
+import com.example.backend.service.GeminiCvExtractionService.SkillCategory;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Fusionne les extractions partielles d'un même CV (un résultat par groupe de pages).
+ * La fusion est déterministe : les parties sont prises dans l'ordre des pages, le premier
+ * élément rencontré fixe la position, et un doublon (même clé normalisée : casse, accents
+ * et ponctuation ignorés) ne fait que compléter les champs manquants de l'élément déjà retenu.
+ */
+public class CvStructuredDataMerger {
+
+    public static CvStructuredData merge(List<CvStructuredData> parts) {
+        CvStructuredData merged = new CvStructuredData();
+        PersonalInfo personalInfo = new PersonalInfo();
+        merged.setPersonalInfo(personalInfo);
+
+        Map<String, Experience> experiences = new LinkedHashMap<>();
+        Map<String, Education> education = new LinkedHashMap<>();
+        Map<String, SkillCategory> skills = new LinkedHashMap<>();
+        Map<String, Language> languages = new LinkedHashMap<>();
+        Map<String, Certification> certifications = new LinkedHashMap<>();
+        Map<String, Project> projects = new LinkedHashMap<>();
+
+        for (CvStructuredData part : parts) {
+            mergePersonalInfo(personalInfo, part.getPersonalInfo());
+            if (isBlank(merged.getSummary()) && !isBlank(part.getSummary())) {
+                merged.setSummary(part.getSummary());
+            }
+            addAll(experiences, part.getExperiences(),
+                e -> key(e.getTitle(), e.getCompany(), e.getStartDate()), CvStructuredDataMerger::mergeExperience);
+            addAll(education, part.getEducation(),
+                e -> key(e.getDegree(), e.getInstitution()), CvStructuredDataMerger::mergeEducation);
+            addAll(skills, part.getSkills(),
+                s -> key(s.getCategory()), CvStructuredDataMerger::mergeSkillCategory);
+            addAll(languages, part.getLanguages(),
+                l -> key(l.getLanguage()), CvStructuredDataMerger::mergeLanguage);
+            addAll(certifications, part.getCertifications(),
+                c -> key(c.getName(), c.getIssuer()), CvStructuredDataMerger::mergeCertification);
+            addAll(projects, part.getProjects(),
+                p -> key(p.getName()), CvStructuredDataMerger::mergeProject);
+        }
+
+        merged.setExperiences(new ArrayList<>(experiences.values()));
+        merged.setEducation(new ArrayList<>(education.values()));
+        merged.setSkills(new ArrayList<>(skills.values()));
+        merged.setLanguages(new ArrayList<>(languages.values()));
+        merged.setCertifications(new ArrayList<>(certifications.values()));
+        merged.setProjects(new ArrayList<>(projects.values()));
+        return merged;
+    }
+
+    private static <T> void addAll(Map<String, T> target, List<T> items, Function<T, String> keyOf, BinaryOperator<T> mergeInto) {
+        if (items == null) {
+            return;
+        }
+        for (T item : items) {
+            String key = keyOf.apply(item);
+            // Élément sans aucun champ identifiant : conservé tel quel
+            if (key.isEmpty()) {
+                key = "#" + target.size();
+            }
+            target.merge(key, item, mergeInto);
+        }
+    }
+
+    private static void mergePersonalInfo(PersonalInfo target, PersonalInfo source) {
+        if (source == null) {
+            return;
+        }
+        target.setName(first(target.getName(), source.getName()));
+        target.setEmail(first(target.getEmail(), source.getEmail()));
+        target.setPhone(first(target.getPhone(), source.getPhone()));
+        target.setLocation(first(target.getLocation(), source.getLocation()));
+        target.setLinkedin(first(target.getLinkedin(), source.getLinkedin()));
+        target.setGithub(first(target.getGithub(), source.getGithub()));
+        target.setPortfolio(first(target.getPortfolio(), source.getPortfolio()));
+    }
+
+    private static Experience mergeExperience(Experience kept, Experience duplicate) {
+        kept.setLocation(first(kept.getLocation(), duplicate.getLocation()));
+        kept.setEndDate(first(kept.getEndDate(), duplicate.getEndDate()));
+        kept.setDescription(longest(kept.getDescription(), duplicate.getDescription()));
+        kept.setAchievements(union(kept.getAchievements(), duplicate.getAchievements()));
+        return kept;
+    }
+
+    private static Education mergeEducation(Education kept, Education duplicate) {
+        kept.setLocation(first(kept.getLocation(), duplicate.getLocation()));
+        kept.setStartDate(first(kept.getStartDate(), duplicate.getStartDate()));
+        kept.setEndDate(first(kept.getEndDate(), duplicate.getEndDate()));
+        kept.setFieldOfStudy(first(kept.getFieldOfStudy(), duplicate.getFieldOfStudy()));
+        kept.setGrade(first(kept.getGrade(), duplicate.getGrade()));
+        return kept;
+    }
+
+    private static SkillCategory mergeSkillCategory(SkillCategory kept, SkillCategory duplicate) {
+        kept.setItems(union(kept.getItems(), duplicate.getItems()));
+        return kept;
+    }
+
+    private static Language mergeLanguage(Language kept, Language duplicate) {
+        kept.setLevel(first(kept.getLevel(), duplicate.getLevel()));
+        return kept;
+    }
+
+    private static Certification mergeCertification(Certification kept, Certification duplicate) {
+        kept.setDate(first(kept.getDate(), duplicate.getDate()));
+        kept.setCredentialId(first(kept.getCredentialId(), duplicate.getCredentialId()));
+        return kept;
+    }
+
+    private static Project mergeProject(Project kept, Project duplicate) {
+        kept.setDescription(longest(kept.getDescription(), duplicate.getDescription()));
+        kept.setTechnologies(union(kept.getTechnologies(), duplicate.getTechnologies()));
+        kept.setUrl(first(kept.getUrl(), duplicate.getUrl()));
+        return kept;
+    }
+
+    /**
+     * Union sans doublons, dans l'ordre d'apparition
+     */
+    private static List<String> union(List<String> kept, List<String> added) {
+        Map<String, String> items = new LinkedHashMap<>();
+        for (List<String> list : List.of(kept != null ? kept : List.<String>of(), added != null ? added : List.<String>of())) {
+            for (String item : list) {
+                if (!isBlank(item)) {
+                    items.putIfAbsent(key(item), item);
+                }
+            }
+        }
+        return new ArrayList<>(items.values());
+    }
+
+    /**
+     * Clé de comparaison : minuscules, sans accents ni ponctuation
+     */
+    private static String key(String... fields) {
+        StringBuilder key = new StringBuilder();
+        boolean empty = true;
+        for (String field : fields) {
+            String normalized = field == null ? "" : Normalizer.normalize(field, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+            empty &= normalized.isEmpty();
+            key.append(normalized).append('|');
+        }
+        return empty ? "" : key.toString();
+    }
+
+    private static String first(String kept, String other) {
+        return !isBlank(kept) ? kept : other;
+    }
+
+    private static String longest(String kept, String other) {
+        if (isBlank(kept)) {
+            return other;
+        }
+        return !isBlank(other) && other.length() > kept.length() ? other : kept;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
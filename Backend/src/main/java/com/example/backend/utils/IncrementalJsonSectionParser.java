@@ -0,0 +1,146 @@
+package com.example.backend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Découpe au fil de l'eau un objet JSON reçu par morceaux (réponse en streaming d'un modèle)
+ * en sections de premier niveau : dès que la valeur d'une clé est syntaxiquement complète,
+ * la paire (clé, texte JSON de la valeur) est retournée, sans attendre la fin de l'objet.
+ * Le texte qui précède la première accolade (```json par exemple) est ignoré.
+ */
+public class IncrementalJsonSectionParser {
+
+    /**
+     * Section complète : nom de la clé et texte JSON brut de sa valeur
+     */
+    public static class Section {
+        private final String name;
+        private final String json;
+
+        public Section(String name, String json) {
+            this.name = name;
+            this.json = json;
+        }
+
+        public String getName() { return name; }
+        public String getJson() { return json; }
+    }
+
+    private enum State { BEFORE_OBJECT, EXPECT_KEY, IN_KEY, EXPECT_COLON, EXPECT_VALUE, IN_VALUE, DONE }
+
+    private State state = State.BEFORE_OBJECT;
+    private final StringBuilder key = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * Ajoute un morceau de texte et retourne les sections complétées par ce morceau
+     */
+    public List<Section> feed(String chunk) {
+        List<Section> completed = new ArrayList<>();
+        if (chunk == null) {
+            return completed;
+        }
+        text.append(chunk);
+        for (int i = 0; i < chunk.length() && state != State.DONE; i++) {
+            accept(chunk.charAt(i), completed);
+        }
+        return completed;
+    }
+
+    /**
+     * Vrai une fois l'accolade fermante de l'objet de premier niveau reçue
+     */
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Tout le texte reçu depuis le début, pour un parsing complet en fin de flux
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    private void accept(char c, List<Section> completed) {
+        switch (state) {
+            case BEFORE_OBJECT -> {
+                if (c == '{') {
+                    state = State.EXPECT_KEY;
+                }
+            }
+            case EXPECT_KEY -> {
+                if (c == '"') {
+                    key.setLength(0);
+                    escaped = false;
+                    state = State.IN_KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                }
+            }
+            case IN_KEY -> {
+                if (escaped) {
+                    key.append(c);
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    state = State.EXPECT_COLON;
+                } else {
+                    key.append(c);
+                }
+            }
+            case EXPECT_COLON -> {
+                if (c == ':') {
+                    state = State.EXPECT_VALUE;
+                }
+            }
+            case EXPECT_VALUE -> {
+                if (!Character.isWhitespace(c)) {
+                    value.setLength(0);
+                    depth = 0;
+                    inString = false;
+                    escaped = false;
+                    state = State.IN_VALUE;
+                    acceptValue(c, completed);
+                }
+            }
+            case IN_VALUE -> acceptValue(c, completed);
+            case DONE -> { }
+        }
+    }
+
+    private void acceptValue(char c, List<Section> completed) {
+        if (inString) {
+            value.append(c);
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+            }
+            return;
+        }
+
+        // Hors chaîne, au niveau de la clé : ',' ou '}' terminent la valeur
+        if (depth == 0 && (c == ',' || c == '}')) {
+            completed.add(new Section(key.toString(), value.toString().trim()));
+            state = c == ',' ? State.EXPECT_KEY : State.DONE;
+            return;
+        }
+
+        value.append(c);
+        if (c == '"') {
+            inString = true;
+        } else if (c == '{' || c == '[') {
+            depth++;
+        } else if (c == '}' || c == ']') {
+            depth--;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.backend.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Forme canonique des requêtes Google, utilisée comme clé de cache.
+ * Deux requêtes équivalentes pour Google (espaces, casse, ordre des termes
+ * d'une conjonction ou d'une disjonction) produisent la même forme canonique.
+ */
+public class SearchQueryUtils {
+
+    private static final String OR = "OR";
+    private static final String AND = "AND";
+
+    /**
+     * Canonicalise une requête : Unicode NFC, casse ignorée sauf pour l'opérateur OR,
+     * espaces compactés, AND implicite retiré, termes triés quand l'ordre n'a pas de sens
+     */
+    public static String canonicalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFC).trim();
+        List<String> tokens = tokenize(normalized);
+        return canonicalizeTerms(tokens);
+    }
+
+    /**
+     * Canonicalise une suite de termes de même niveau.
+     * Pure conjonction : termes triés. Pure disjonction (a OR b OR c) : alternatives triées.
+     * Mélange des deux : ordre conservé, car OR lie les termes voisins.
+     */
+    private static String canonicalizeTerms(List<String> tokens) {
+        List<String> terms = new ArrayList<>();
+        boolean hasOr = false;
+        for (String token : tokens) {
+            if (token.equals(AND)) {
+                continue;
+            }
+            if (token.equals(OR)) {
+                hasOr = true;
+                terms.add(OR);
+                continue;
+            }
+            terms.add(canonicalizeTerm(token));
+        }
+
+        if (!hasOr) {
+            terms.sort(null);
+            return String.join(" ", terms);
+        }
+
+        if (isPureDisjunction(terms)) {
+            List<String> alternatives = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i += 2) {
+                alternatives.add(terms.get(i));
+            }
+            alternatives.sort(null);
+            return String.join(" OR ", alternatives);
+        }
+
+        return String.join(" ", terms);
+    }
+
+    private static boolean isPureDisjunction(List<String> terms) {
+        if (terms.size() % 2 == 0) {
+            return false;
+        }
+        for (int i = 0; i < terms.size(); i++) {
+            boolean isOperator = terms.get(i).equals(OR);
+            if (isOperator != (i % 2 == 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Un groupe entre parenthèses est canonicalisé récursivement,
+     * une phrase entre guillemets garde son ordre interne
+     */
+    private static String canonicalizeTerm(String term) {
+        int open = term.indexOf('(');
+        if (open >= 0 && term.endsWith(")") && !term.startsWith("\"")) {
+            String prefix = term.substring(0, open).toLowerCase(Locale.ROOT);
+            String inner = term.substring(open + 1, term.length() - 1);
+            return prefix + "(" + canonicalizeTerms(tokenize(inner)) + ")";
+        }
+        return term.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Découpe au niveau courant : les phrases entre guillemets et les groupes
+     * entre parenthèses (avec un éventuel préfixe comme "-" ou "intitle:") restent entiers
+     */
+    private static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+        boolean quoted = false;
+
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')' && depth > 0) {
+                depth--;
+            }
+
+            if (Character.isWhitespace(c) && !quoted && depth == 0) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.backend.utils;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * CV copié dans un fichier temporaire, présenté comme un fichier uploadé :
+ * le contenu reste sur disque et n'est jamais chargé en mémoire d'un bloc.
+ * close() supprime le fichier.
+ */
+public class TempCvFile implements MultipartFile, Closeable {
+
+    private final String originalFilename;
+    private final String contentType;
+    private final Path path;
+
+    private TempCvFile(String originalFilename, String contentType, Path path) {
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.path = path;
+    }
+
+    /**
+     * Nouveau fichier temporaire vide, à remplir via getPath()
+     */
+    public static TempCvFile create(String originalFilename, String contentType) throws IOException {
+        return new TempCvFile(originalFilename, contentType, Files.createTempFile("cv-", ".tmp"));
+    }
+
+    /**
+     * Copie un fichier uploadé sur disque
+     */
+    public static TempCvFile spool(MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            return spool(file.getOriginalFilename(), file.getContentType(), input);
+        }
+    }
+
+    /**
+     * Copie un flux sur disque (le flux n'est pas fermé)
+     */
+    public static TempCvFile spool(String originalFilename, String contentType, InputStream input) throws IOException {
+        TempCvFile file = create(originalFilename, contentType);
+        try {
+            Files.copy(input, file.path, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}